@@ -0,0 +1,255 @@
+package snake;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+// Optional binary protocol, picked by the client at connect time. A text client's first
+// byte is always printable, so a connection that starts with a 0 byte is a binary one:
+//
+//   handshake (client)   0x00 'S' 'N' 'K' <version> <capabilities>
+//   input (client)       <length u8> <opcode> [payload]          length counts opcode + payload
+//   message (server)     <length varint> <type> [payload]        length counts type + payload
+//
+// The server answers the handshake with HELLO carrying the version it will speak and
+// the capabilities both sides have. Text the server sent before it read the handshake may
+// come first; text never contains a 0 byte, so the client skips up to the first 0 (HELLO's
+// type byte, right after its length byte). Numbers are unsigned LEB128 varints, cells are
+// single bytes, and delta cells are packed as y * width + x within the player's window.
+//
+//   HELLO     version, capabilities
+//   KEYFRAME  level, width, height, x, y, then width * height cell bytes
+//   DELTA     count, then count times (packed cell, cell byte)
+//   SCORES    points to level up, count, then count times (player char, score)
+//   TEXT      UTF-8 message (level up, debug, ...)
+//   GAME_OVER
+public final class BinaryProtocol {
+    public static final int VERSION = 1;
+    public static final int MAGIC = 0x00;
+    public static final byte[] HANDSHAKE_PREFIX = {MAGIC, 'S', 'N', 'K'};
+    public static final int HANDSHAKE_LENGTH = HANDSHAKE_PREFIX.length + 2;
+
+    // Capabilities
+    public static final int CAP_DELTA = 1; // Client keeps its window: send keyframe + deltas
+    public static final int SERVER_CAPS = CAP_DELTA;
+
+    // Client inputs
+    public static final int IN_UP = 1;
+    public static final int IN_DOWN = 2;
+    public static final int IN_LEFT = 3;
+    public static final int IN_RIGHT = 4;
+    public static final int IN_QUIT = 5;
+    public static final int IN_ROOM = 6;   // room id
+    public static final int IN_VIEW = 7;   // width, height
+    public static final int IN_SPECTATE = 8;
+    public static final int IN_TOKEN = 9;    // asks for the session token (answered as TEXT)
+    public static final int IN_RECLAIM = 10; // token (8 bytes), takes back a restored snake
+
+    // Server messages
+    public static final int MSG_HELLO = 0;
+    public static final int MSG_KEYFRAME = 1;
+    public static final int MSG_DELTA = 2;
+    public static final int MSG_SCORES = 3;
+    public static final int MSG_TEXT = 4;
+    public static final int MSG_GAME_OVER = 5;
+
+    public static final int MAX_INPUT_LENGTH = 16;
+
+    private static final Frame GAME_OVER = Frame.wrap(new Writer().message(MSG_GAME_OVER, new Writer()).toByteArray());
+
+    private BinaryProtocol() {
+    }
+
+    public static Frame hello(int version, int capabilities) {
+        Writer body = new Writer();
+        body.writeVarint(version);
+        body.writeVarint(capabilities);
+        return Frame.wrap(new Writer().message(MSG_HELLO, body).toByteArray());
+    }
+
+    public static Frame text(String text) {
+        Writer body = new Writer();
+        body.writeBytes(text.getBytes(StandardCharsets.UTF_8));
+        return Frame.wrap(new Writer().message(MSG_TEXT, body).toByteArray());
+    }
+
+    public static Frame gameOver() {
+        return GAME_OVER;
+    }
+
+    // A SCORES message, encoded once per tick and appended to keyframes and deltas
+    public static Writer scores(int pointsToLevelUp, char[] playerChars, int[] scores, int count) {
+        Writer body = new Writer();
+        body.writeVarint(pointsToLevelUp);
+        body.writeVarint(count);
+        for (int i = 0; i < count; i++) {
+            body.writeByte(playerChars[i]);
+            body.writeVarint(scores[i]);
+        }
+        return new Writer().message(MSG_SCORES, body);
+    }
+
+    public static Frame keyframe(int level, char[][] frame, Viewport view, Writer scores) {
+        Writer body = new Writer();
+        body.writeVarint(level);
+        body.writeVarint(view.getWidth());
+        body.writeVarint(view.getHeight());
+        body.writeVarint(view.getX());
+        body.writeVarint(view.getY());
+        for (int y = view.getY(); y < view.getY() + view.getHeight(); y++) {
+            for (int x = view.getX(); x < view.getX() + view.getWidth(); x++) {
+                body.writeByte(frame[y][x]);
+            }
+        }
+        Writer out = new Writer().message(MSG_KEYFRAME, body);
+        out.writeBytes(scores);
+        return Frame.wrap(out.toByteArray());
+    }
+
+    // Cells of the window that changed since previous, plus the scores if they changed;
+    // null if there is nothing to send
+    public static Frame delta(char[][] previous, char[][] frame, Viewport view, Writer changedScores) {
+        Writer cells = new Writer();
+        int count = 0;
+        for (int y = 0; y < view.getHeight(); y++) {
+            char[] row = frame[view.getY() + y];
+            char[] previousRow = previous[view.getY() + y];
+            for (int x = 0; x < view.getWidth(); x++) {
+                char cell = row[view.getX() + x];
+                if (cell != previousRow[view.getX() + x]) {
+                    cells.writeVarint(y * view.getWidth() + x);
+                    cells.writeByte(cell);
+                    count++;
+                }
+            }
+        }
+        if (count == 0 && changedScores == null) return null;
+
+        Writer out = new Writer();
+        if (changedScores != null) {
+            out.writeBytes(changedScores);
+        }
+        if (count > 0) {
+            Writer body = new Writer();
+            body.writeVarint(count);
+            body.writeBytes(cells);
+            out.message(MSG_DELTA, body);
+        }
+        return Frame.wrap(out.toByteArray());
+    }
+
+    // Reads one varint from a stream (used by the blocking reader and the client)
+    public static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new EOFException();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    // Growable byte buffer for building messages
+    public static final class Writer {
+        private byte[] bytes = new byte[64];
+        private int size = 0;
+
+        public void writeByte(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        public void writeVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        public void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                writeByte((int) (value >>> shift));
+            }
+        }
+
+        public void writeBytes(byte[] data) {
+            ensure(data.length);
+            System.arraycopy(data, 0, bytes, size, data.length);
+            size += data.length;
+        }
+
+        public void writeBytes(Writer other) {
+            ensure(other.size);
+            System.arraycopy(other.bytes, 0, bytes, size, other.size);
+            size += other.size;
+        }
+
+        // Appends a whole message: length, type, then body
+        public Writer message(int type, Writer body) {
+            writeVarint(body.size + 1);
+            writeByte(type);
+            writeBytes(body);
+            return this;
+        }
+
+        public byte[] toByteArray() {
+            byte[] copy = new byte[size];
+            System.arraycopy(bytes, 0, copy, 0, size);
+            return copy;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                byte[] grown = new byte[Math.max(bytes.length * 2, size + extra)];
+                System.arraycopy(bytes, 0, grown, 0, size);
+                bytes = grown;
+            }
+        }
+    }
+
+    // Reads fields from one received message body
+    public static final class Reader {
+        private final byte[] bytes;
+        private int position;
+        private final int limit;
+
+        public Reader(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.position = offset;
+            this.limit = offset + length;
+        }
+
+        public int readByte() throws IOException {
+            if (position >= limit) throw new EOFException();
+            return bytes[position++] & 0xFF;
+        }
+
+        public int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        public long readLong() throws IOException {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+
+        public String readRemainingText() {
+            String text = new String(bytes, position, limit - position, StandardCharsets.UTF_8);
+            position = limit;
+            return text;
+        }
+    }
+}
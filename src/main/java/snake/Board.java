@@ -0,0 +1,366 @@
+package snake;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.ArrayList;
+import java.util.List;
+import java.awt.Point;
+
+public class Board {
+    private int width;
+    private int height;
+    private char[][] grid;
+    private Random random = new Random();
+    private Occupancy occupancy;
+    // Head positions where a new snake fits right now (see isSafeSpawn), kept up to
+    // date as walls, fruit and snake segments come and go
+    private CellSet spawnCells;
+    // Bit (y * width + x) set for every wall; shared with the Level it came from
+    private long[] walls;
+
+    // Level 1: Open field
+    private static final String[] LEVEL_1_MAP = {
+        "########################################",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "########################################"
+    };
+
+    // Level 2: Center blocks
+    private static final String[] LEVEL_2_MAP = {
+        "########################################",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "#        ##########    ##########      #",
+        "#        #                     #       #",
+        "#        #                     #       #",
+        "#        ##########    ##########      #",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "#        ##########    ##########      #",
+        "#        #                     #       #",
+        "#        #                     #       #",
+        "#        ##########    ##########      #",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "#                                      #",
+        "########################################"
+    };
+
+    // Level 3: Tunnels
+    private static final String[] LEVEL_3_MAP = {
+        "########################################",
+        "#                                      #",
+        "# ################### ################ #",
+        "# #                   #              # #",
+        "# # ################### ############ # #",
+        "# # #                                # #",
+        "# # # #################### ######### # #",
+        "# # # #                  # #       # # #",
+        "# # # # ################ # # ##### # # #",
+        "# # # # #              # # # #   # # # #",
+        "# # # # # ############ # # # #   # # # #",
+        "# # # # # #          # # # # ##### # # #",
+        "# # # # # ############ # # #       # # #",
+        "# # # # #              # # ######### # #",
+        "# # # ################## #           # #",
+        "# # #                    ############# #",
+        "# #################################### #",
+        "#                                      #",
+        "#                                      #",
+        "########################################"
+    };
+
+    // Level 4: Large Arena
+    private static final String[] LEVEL_4_MAP = {
+        "############################################################",
+        "#                                                          #",
+        "#                                                          #",
+        "#    #############                  #############          #",
+        "#    #           #                  #           #          #",
+        "#    #           #                  #           #          #",
+        "#    #           #                  #           #          #",
+        "#    #############                  #############          #",
+        "#                                                          #",
+        "#                                                          #",
+        "#                                                          #",
+        "#                                                          #",
+        "#                  ####################                    #",
+        "#                  #                  #                    #",
+        "#                  #                  #                    #",
+        "#                  ####################                    #",
+        "#                                                          #",
+        "#                                                          #",
+        "#    #############                  #############          #",
+        "#    #           #                  #           #          #",
+        "#    #           #                  #           #          #",
+        "#    #           #                  #           #          #",
+        "#    #############                  #############          #",
+        "#                                                          #",
+        "############################################################"
+    };
+
+    // Compiled once (see Level) and shared by every board; map files loaded at startup
+    // replace the built-in ones (useLevels)
+    private static volatile List<Level> levels = List.of(
+            builtIn("level 1", LEVEL_1_MAP),
+            builtIn("level 2", LEVEL_2_MAP),
+            builtIn("level 3", LEVEL_3_MAP),
+            builtIn("level 4", LEVEL_4_MAP));
+
+    private static Level builtIn(String name, String[] map) {
+        try {
+            return Level.compile(name, map);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Plays these levels, in order, in every game created from now on
+    public static void useLevels(List<Level> compiled) {
+        if (compiled.isEmpty()) throw new IllegalArgumentException("No levels");
+        levels = List.copyOf(compiled);
+    }
+
+    // Loads the levels from the map directory named by snake.maps.dir, if set; call at
+    // startup, before any game is created
+    public static void loadLevels() throws IOException {
+        String dir = System.getProperty("snake.maps.dir");
+        if (dir == null) return;
+        List<Level> loaded = Level.loadAll(Paths.get(dir));
+        useLevels(loaded);
+        System.out.println("Loaded " + loaded.size() + " levels from " + dir);
+    }
+
+    public Board(int level) {
+        initBoard(level);
+    }
+
+    // Same map, with spawns and fruit drawn from a seeded generator (replays)
+    public Board(int level, long seed) {
+        this.random = new Random(seed);
+        initBoard(level);
+    }
+
+    // Generated arena for very large games: border walls plus short wall segments
+    // scattered at random (one per ~400 cells). The same seed gives the same walls and
+    // the same fruit sequence.
+    public Board(int width, int height, long seed) {
+        this.random = new Random(seed);
+        this.width = width;
+        this.height = height;
+        this.grid = new char[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean border = y == 0 || y == height - 1 || x == 0 || x == width - 1;
+                grid[y][x] = border ? '#' : ' ';
+            }
+        }
+        int segments = width * height / 400;
+        for (int i = 0; i < segments; i++) {
+            int x = 1 + random.nextInt(width - 2);
+            int y = 1 + random.nextInt(height - 2);
+            int length = 3 + random.nextInt(6);
+            boolean horizontal = random.nextBoolean();
+            for (int j = 0; j < length && x < width - 1 && y < height - 1; j++) {
+                grid[y][x] = '#';
+                if (horizontal) x++; else y++;
+            }
+        }
+        initCells();
+        placeFruit();
+    }
+
+    // A board saved in a snapshot: walls and fruit as they were, no snakes yet
+    public Board(char[][] grid) {
+        this.height = grid.length;
+        this.width = grid[0].length;
+        this.grid = grid;
+        initCells();
+    }
+
+    // Copies of the compiled level's grid and spawn cells; the walls are shared
+    private void initBoard(int level) {
+        Level compiled = levels.get(level - 1);
+        this.height = compiled.getHeight();
+        this.width = compiled.getWidth();
+        this.grid = compiled.copyRows();
+        this.walls = compiled.getWalls();
+        this.occupancy = new Occupancy(width, height);
+        this.spawnCells = compiled.copySpawnCells();
+        placeFruit();
+    }
+
+    // Finds the walls and spawn cells of a grid that has no compiled Level behind it
+    private void initCells() {
+        this.occupancy = new Occupancy(width, height);
+        this.walls = findWalls(grid);
+        this.spawnCells = findSpawnCells(grid);
+    }
+
+    // Bit (y * width + x) set for every wall of the grid
+    static long[] findWalls(char[][] grid) {
+        int height = grid.length;
+        int width = grid[0].length;
+        long[] walls = new long[(width * height + 63) / 64];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (grid[y][x] == '#') {
+                    int cell = y * width + x;
+                    walls[cell >>> 6] |= 1L << cell;
+                }
+            }
+        }
+        return walls;
+    }
+
+    // Spawn cells of a grid with no snakes on it yet. Static so Level can compile the
+    // built-in maps while this class is still initializing, without building a Board
+    static CellSet findSpawnCells(char[][] grid) {
+        int height = grid.length;
+        int width = grid[0].length;
+        CellSet cells = new CellSet(width * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (isSpawnWindow(grid, x, y)) {
+                    cells.add(y * width + x);
+                }
+            }
+        }
+        return cells;
+    }
+
+    // The grid half of isSafeSpawn: 4 floor cells in a row inside the border
+    private static boolean isSpawnWindow(char[][] grid, int x, int y) {
+        if (y < 1 || y >= grid.length - 1 || x < 2 || x >= grid[y].length - 2) return false;
+        char[] row = grid[y];
+        return row[x - 2] == ' ' && row[x - 1] == ' ' && row[x] == ' ' && row[x + 1] == ' ';
+    }
+
+    // A point is "safe" if the snake can spawn there (head) and not have its
+    // body in a wall, and also not crash on its first move to the right.
+    // Requires 4 free cells in a row: [body-2, body-1, head, first-move]
+    private boolean isSafeSpawn(int x, int y) {
+        return isSpawnWindow(grid, x, y)
+                && occupancy.isFree(x - 2, y) && occupancy.isFree(x - 1, y)
+                && occupancy.isFree(x, y) && occupancy.isFree(x + 1, y);
+    }
+
+    private void refreshSpawnCell(int x, int y) {
+        if (x < 0 || x >= width) return;
+        if (isSafeSpawn(x, y)) {
+            spawnCells.add(y * width + x);
+        } else {
+            spawnCells.remove(y * width + x);
+        }
+    }
+
+    // A cell is part of the spawn windows of the heads up to 1 left and 2 right of it
+    private void cellChanged(int x, int y) {
+        if (y < 0 || y >= height) return;
+        for (int headX = x - 1; headX <= x + 2; headX++) {
+            refreshSpawnCell(headX, y);
+        }
+    }
+
+    public List<Point> getSafeSpawnPoints() {
+        List<Point> safePoints = new ArrayList<>(spawnCells.size());
+        for (int i = 0; i < spawnCells.size(); i++) {
+            int cell = spawnCells.get(i);
+            safePoints.add(new Point(cell % width, cell / width));
+        }
+        return safePoints;
+    }
+
+    // Head cell (y * width + x) for a new snake that overlaps no wall, fruit or
+    // other snake, or -1 if there is no room
+    public int pickSpawnCell() {
+        return spawnCells.pick(random);
+    }
+
+    public boolean hasSpawnCell() {
+        return spawnCells.size() > 0;
+    }
+
+    public final void placeFruit() {
+        int cell = spawnCells.pick(random);
+        if (cell < 0) {
+            return; // No space left
+        }
+        char fruit = (char) (random.nextInt(9) + '1');
+        setCell(cell % width, cell / width, fruit);
+    }
+
+    // Snake segments are tracked here so spawn and fruit placement can avoid them
+    public void occupy(int x, int y, int snakeId) {
+        boolean wasFree = occupancy.isFree(x, y);
+        occupancy.occupy(x, y, snakeId);
+        if (wasFree) cellChanged(x, y);
+    }
+
+    public void release(int x, int y, int snakeId) {
+        occupancy.release(x, y, snakeId);
+        if (occupancy.isFree(x, y)) cellChanged(x, y);
+    }
+
+    public Occupancy getOccupancy() {
+        return occupancy;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public static int getMaxLevels() {
+        return levels.size();
+    }
+
+    // True for walls and anything off the board; one bit test instead of a grid lookup
+    public boolean isWall(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) return true;
+        int cell = y * width + x;
+        return (walls[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    public char getCell(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return '#'; // Treat out of bounds as a wall
+        }
+        return grid[y][x];
+    }
+
+    public final void setCell(int x, int y, char value) {
+        if (x > 0 && x < width - 1 && y > 0 && y < height - 1) {
+            grid[y][x] = value;
+            cellChanged(x, y);
+        }
+    }
+
+    public char[][] getGrid() {
+        return grid;
+    }
+}
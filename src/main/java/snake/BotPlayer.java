@@ -0,0 +1,27 @@
+package snake;
+
+// A snake played by the server: a HeadlessPlayer that picks its turn with the room's
+// Pathfinder at the start of every tick. The turn goes through the same
+// InputBuffer as a human's, so replays and the tick treat bots like anyone else.
+//
+// Rooms keep themselves topped up with bots up to snake.bots.fill snakes (see
+// RoomManager); bots make way again as people join.
+public class BotPlayer extends HeadlessPlayer {
+    static final char BOT_CHAR = '*';
+
+    // Not in the room's player list: a dead or unplaced bot leaves the room's bots, and
+    // the room brings in a new one when it has space
+    public BotPlayer(Game game) {
+        super(game, BOT_CHAR, game.getBots());
+    }
+
+    // Called by the game thread before the room's turns are applied
+    void think(Pathfinder pathfinder, Board board) {
+        Snake snake = getSnake();
+        if (snake == null) return;
+        Snake.Direction direction = pathfinder.choose(board, snake);
+        if (direction != null && direction != snake.getDirection()) {
+            getInputs().offer(direction);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package snake;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+
+// Compares the cost of broadcasting one full Level 4 screen to N players:
+//   before: every player's autoflushing PrintWriter encodes and flushes the String itself
+//   after:  the screen is encoded once into a Frame and the same bytes go to every player
+// Sockets are replaced by a byte-counting sink so only the fan-out work is measured.
+//
+//   java snake.BroadcastBenchmark
+public class BroadcastBenchmark {
+    private static final int[] PLAYER_COUNTS = {1, 10, 50, 100, 500, 1000};
+    private static final int WARMUP_ROUNDS = 2_000;
+    private static final int MEASURED_ROUNDS = 5_000;
+
+    private static long sink;
+
+    public static void main(String[] args) throws IOException {
+        String screen = levelFourScreen();
+        System.out.println("Frame size: " + Frame.of(screen).length() + " bytes");
+        System.out.printf("%8s %14s %14s %8s%n", "players", "before (us)", "after (us)", "speedup");
+
+        for (int players : PLAYER_COUNTS) {
+            int rounds = Math.max(50, MEASURED_ROUNDS / players);
+            OutputStream[] streams = new OutputStream[players];
+            PrintWriter[] writers = new PrintWriter[players];
+            for (int i = 0; i < players; i++) {
+                streams[i] = new CountingStream();
+                writers[i] = new PrintWriter(streams[i], true);
+            }
+
+            runBefore(writers, screen, WARMUP_ROUNDS / players + 1);
+            double before = runBefore(writers, screen, rounds);
+            runAfter(streams, screen, WARMUP_ROUNDS / players + 1);
+            double after = runAfter(streams, screen, rounds);
+
+            System.out.printf("%8d %14.1f %14.1f %7.1fx%n", players, before, after, before / after);
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    // Average microseconds per broadcast
+    private static double runBefore(PrintWriter[] writers, String screen, int rounds) {
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (PrintWriter writer : writers) {
+                writer.println(screen);
+            }
+        }
+        return (System.nanoTime() - start) / 1000.0 / rounds;
+    }
+
+    private static double runAfter(OutputStream[] streams, String screen, int rounds) throws IOException {
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            Frame frame = Frame.of(screen);
+            for (OutputStream stream : streams) {
+                frame.writeTo(stream);
+            }
+        }
+        return (System.nanoTime() - start) / 1000.0 / rounds;
+    }
+
+    private static String levelFourScreen() {
+        Board board = new Board(4);
+        StringBuilder sb = new StringBuilder();
+        sb.append("\033[H\033[2J");
+        sb.append("--- Snake vs Snakes --- Level: 4 ---\n");
+        for (char[] row : board.getGrid()) {
+            sb.append(row).append("\n");
+        }
+        sb.append("--- Top 3 Players ---\n--------------------\nLevel Up In: 200 points\n");
+        return sb.toString();
+    }
+
+    // Stands in for a socket: touches every byte count but does no I/O
+    private static class CountingStream extends OutputStream {
+        @Override
+        public void write(int b) {
+            sink++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            sink += len;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package snake;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Set of board cells (packed as y * width + x) with O(1) add, remove, contains and
+// random pick. Members are kept densely in one array; a second array remembers
+// where each cell sits so removal can swap the last member into its slot.
+public class CellSet {
+    private final int[] members;
+    private final int[] indexOf; // -1 when the cell is not in the set
+    private int size = 0;
+
+    public CellSet(int cellCount) {
+        this.members = new int[cellCount];
+        this.indexOf = new int[cellCount];
+        Arrays.fill(indexOf, -1);
+    }
+
+    // Same members in the same order, so picks from the copy match picks from the original
+    public CellSet(CellSet other) {
+        this.members = other.members.clone();
+        this.indexOf = other.indexOf.clone();
+        this.size = other.size;
+    }
+
+    public void add(int cell) {
+        if (indexOf[cell] >= 0) return;
+        indexOf[cell] = size;
+        members[size++] = cell;
+    }
+
+    public void remove(int cell) {
+        int index = indexOf[cell];
+        if (index < 0) return;
+        int last = members[--size];
+        members[index] = last;
+        indexOf[last] = index;
+        indexOf[cell] = -1;
+    }
+
+    public boolean contains(int cell) {
+        return indexOf[cell] >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(int index) {
+        return members[index];
+    }
+
+    // A uniformly random member, or -1 if the set is empty
+    public int pick(Random random) {
+        return size == 0 ? -1 : members[random.nextInt(size)];
+    }
+}
@@ -0,0 +1,123 @@
+package snake;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+// Collision phase of one tick on the Level 4 map (60x25), many long snakes:
+//   before: every head walks its own LinkedList<Point> body (get(i)) and every other snake's body,
+//           as Game.tick and Snake did before the occupancy grid and the ring-buffer body
+//   after:  each snake updates the Occupancy grid for its new head and old tail, then every
+//           head is checked with O(1) lookups
+// Snakes are laid out by random walks and may overlap; only the checking cost is measured.
+//
+//   java snake.CollisionBenchmark
+public class CollisionBenchmark {
+    private static final int[] SNAKE_COUNTS = {10, 50, 200};
+    private static final int[] SNAKE_LENGTHS = {10, 50, 200};
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        Board board = new Board(4);
+        System.out.printf("%7s %7s %14s %14s %9s%n", "snakes", "length", "before (us)", "after (us)", "speedup");
+
+        for (int count : SNAKE_COUNTS) {
+            for (int length : SNAKE_LENGTHS) {
+                List<Snake> snakes = buildSnakes(board, count, length, new Random(42));
+                Occupancy occupancy = new Occupancy(board.getWidth(), board.getHeight());
+                List<LinkedList<Point>> bodies = new ArrayList<>();
+                for (Snake snake : snakes) {
+                    LinkedList<Point> body = new LinkedList<>();
+                    for (int i = 0; i < snake.getLength(); i++) {
+                        occupancy.occupy(snake.getX(i), snake.getY(i), snake.getId());
+                        body.add(new Point(snake.getX(i), snake.getY(i)));
+                    }
+                    bodies.add(body);
+                }
+
+                int rounds = Math.max(5, 2_000_000 / (count * count * length));
+                runBefore(bodies, rounds);
+                double before = runBefore(bodies, rounds);
+                runAfter(snakes, occupancy, rounds * 100);
+                double after = runAfter(snakes, occupancy, rounds * 100);
+                System.out.printf("%7d %7d %14.1f %14.2f %8.0fx%n", count, length, before, after, before / after);
+            }
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    // The collision loop Game.tick used before the occupancy grid, microseconds per tick
+    private static double runBefore(List<LinkedList<Point>> bodies, int rounds) {
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (LinkedList<Point> body : bodies) {
+                Point head = body.getFirst();
+                boolean selfHit = false;
+                for (int i = 1; i < body.size(); i++) {
+                    if (head.equals(body.get(i))) {
+                        selfHit = true;
+                        break;
+                    }
+                }
+                if (selfHit) {
+                    sink++;
+                    continue;
+                }
+                boolean hit = false;
+                for (LinkedList<Point> otherBody : bodies) {
+                    if (body == otherBody) continue;
+                    for (Point bodyPart : otherBody) {
+                        if (head.equals(bodyPart)) {
+                            hit = true;
+                            break;
+                        }
+                    }
+                    if (hit) break;
+                }
+                if (hit) sink++;
+            }
+        }
+        return (System.nanoTime() - start) / 1000.0 / rounds;
+    }
+
+    // Head/tail bookkeeping plus the O(1) checks Game.tick does now
+    private static double runAfter(List<Snake> snakes, Occupancy occupancy, int rounds) {
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (Snake snake : snakes) {
+                // Same work as occupying the new head and releasing the old tail,
+                // without actually moving the snakes between rounds
+                occupancy.release(snake.getTailX(), snake.getTailY(), snake.getId());
+                occupancy.occupy(snake.getTailX(), snake.getTailY(), snake.getId());
+            }
+            for (Snake snake : snakes) {
+                int headX = snake.getHeadX();
+                int headY = snake.getHeadY();
+                if (occupancy.isCrowded(headX, headY)) {
+                    sink += occupancy.isSelfCollision(headX, headY, snake.getId()) ? 1 : 2;
+                }
+            }
+        }
+        return (System.nanoTime() - start) / 1000.0 / rounds;
+    }
+
+    private static List<Snake> buildSnakes(Board board, int count, int length, Random random) {
+        Snake.Direction[] directions = Snake.Direction.values();
+        List<Snake> snakes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int x = 3 + random.nextInt(board.getWidth() - 6);
+            int y = 1 + random.nextInt(board.getHeight() - 2);
+            Snake snake = new Snake(x, y, 'a');
+            while (snake.getLength() < length) {
+                snake.setDirection(directions[random.nextInt(directions.length)]);
+                snake.grow();
+                snake.move();
+            }
+            snakes.add(snake);
+        }
+        return snakes;
+    }
+}
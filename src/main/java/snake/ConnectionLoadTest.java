@@ -0,0 +1,112 @@
+package snake;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Opens many idle connections against an in-process accept loop and reports how many
+// OS threads and how much resident memory the server side needs to hold them.
+//
+//   java snake.ConnectionLoadTest platform 5000
+//   java snake.ConnectionLoadTest virtual 10000
+//
+// Each connection gets a PlayerHandler run on the mode's executor, as in SnakeServer, so
+// each holds a reader and a writer thread (two OS threads per connection in platform
+// mode). Unlike SnakeServer, connections never go through RoomManager.admit: no room,
+// no snake and nothing broadcast. What is measured is the cost of holding idle
+// connections, not of playing, and it is not capped by rooms or spawn points.
+public class ConnectionLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "virtual";
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        boolean virtual = mode.equals("virtual");
+        if (!virtual && !mode.equals("platform")) {
+            System.err.println("Usage: java snake.ConnectionLoadTest <platform|virtual> [connections]");
+            return;
+        }
+
+        Executor playerExecutor = virtual
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : playerHandler -> new Thread(playerHandler).start();
+        List<PlayerHandler> players = new CopyOnWriteArrayList<>();
+        Game game = new Game(players); // Never started: we only measure connection handling
+        AtomicInteger accepted = new AtomicInteger();
+
+        printStats("baseline", mode, 0);
+
+        ServerSocket serverSocket = new ServerSocket(0, connections, InetAddress.getLoopbackAddress());
+        Runnable acceptLoop = () -> {
+            try {
+                while (true) {
+                    Socket clientSocket = serverSocket.accept();
+                    PlayerHandler playerHandler = new PlayerHandler(clientSocket, game, 'x', players);
+                    playerExecutor.execute(playerHandler);
+                    accepted.incrementAndGet();
+                }
+            } catch (IOException | OutOfMemoryError e) {
+                System.err.println("Accept loop stopped after " + accepted.get() + " connections: " + e);
+            }
+        };
+        if (virtual) {
+            Thread.ofVirtual().start(acceptLoop);
+        } else {
+            Thread acceptThread = new Thread(acceptLoop);
+            acceptThread.setDaemon(true);
+            acceptThread.start();
+        }
+
+        long start = System.nanoTime();
+        List<Socket> clients = new ArrayList<>(connections);
+        try {
+            for (int i = 0; i < connections; i++) {
+                clients.add(new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort()));
+            }
+        } catch (IOException e) {
+            System.err.println("Client stopped after " + clients.size() + " connections: " + e.getMessage());
+        }
+        while (accepted.get() < clients.size() && System.nanoTime() - start < 30_000_000_000L) {
+            Thread.sleep(50);
+        }
+        Thread.sleep(1000); // Let every handler reach its blocking readLine()
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        printStats("connected", mode, accepted.get());
+        System.out.println("Time to accept: " + elapsedMs + " ms");
+
+        System.exit(0); // Sockets are released with the process
+    }
+
+    private static void printStats(String phase, String mode, int connections) {
+        System.gc();
+        System.out.printf("[%s] mode=%s connections=%d threads=%d peakThreads=%d rss=%s%n",
+                phase, mode, connections,
+                ManagementFactory.getThreadMXBean().getThreadCount(),
+                ManagementFactory.getThreadMXBean().getPeakThreadCount(),
+                readRss());
+    }
+
+    // Linux only: resident set size as reported by the kernel
+    private static String readRss() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return line.substring("VmRSS:".length()).trim();
+                }
+            }
+        } catch (IOException e) {
+            // Not on Linux
+        }
+        return "n/a";
+    }
+}
@@ -0,0 +1,45 @@
+package snake;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// One protocol message, already encoded as a line of bytes. A broadcast encodes
+// its message once and hands the same Frame to every connection.
+public final class Frame {
+    private final byte[] bytes;
+    private final boolean text;
+
+    private Frame(byte[] bytes, boolean text) {
+        this.bytes = bytes;
+        this.text = text;
+    }
+
+    public static Frame of(String message) {
+        return new Frame((message + "\n").getBytes(StandardCharsets.UTF_8), true);
+    }
+
+    // Already encoded bytes (see BinaryProtocol); the array must not change afterwards
+    public static Frame wrap(byte[] bytes) {
+        return new Frame(bytes, false);
+    }
+
+    // A line of the text protocol rather than a BinaryProtocol message
+    public boolean isText() {
+        return text;
+    }
+
+    public int length() {
+        return bytes.length;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes);
+    }
+
+    // A fresh read-only view with its own position, safe to hand to one channel write
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+}
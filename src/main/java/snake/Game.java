@@ -0,0 +1,1107 @@
+package snake;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+public class Game {
+    private Board board;
+    // Only touched under the game lock; other threads read the published state instead
+    private final List<Snake> snakes = new ArrayList<>();
+    // The same snakes by score, with their total (see Leaderboard)
+    private final Leaderboard leaderboard = new Leaderboard();
+    private HighScores highScores = null; // All-time table shared by the rooms; null = none
+    private boolean won = false; // Every snake's score was offered when the last level was beaten
+    private final List<PlayerHandler> players;
+    // Watchers without a snake; they all get the same frame (see broadcastToSpectators)
+    private final List<PlayerHandler> spectators = new CopyOnWriteArrayList<>();
+    // Snakes played by the server (see BotPlayer); only changed by the game thread
+    private final List<BotPlayer> bots = new CopyOnWriteArrayList<>();
+    private int botFill = 0;
+    private Pathfinder pathfinder = null;
+    private final int roomId;
+    // Joins, leaves and moves asked for by connection threads (the NIO selector among
+    // them), applied by the game thread before the next tick, so those threads never
+    // wait for the game lock while a tick runs
+    private final Queue<Runnable> membershipChanges = new ConcurrentLinkedQueue<>();
+    // Owner tokens of the parked snakes, so reclaim can find a room without its lock
+    private final Set<Long> parkedTokens = ConcurrentHashMap.newKeySet();
+    private int currentLevel;
+    private int gameSpeed;
+    private TickScheduler scheduler;
+    private boolean levelLocked = false;
+
+    // Parallel tick (see tick()). Only with more than one core: on one, the bands just add
+    // task overhead (TickDeterminismCheck prints both timings for a given size).
+    static final int PARALLEL_MIN_SNAKES = Integer.getInteger("snake.tick.parallelMinSnakes", 512);
+    private static final boolean MULTI_CORE = Runtime.getRuntime().availableProcessors() > 1;
+    private static final int REGION_COUNT = ForkJoinPool.getCommonPoolParallelism() * 4;
+    private static final byte HIT_NOTHING = 0;
+    private static final byte HIT_WALL = 1;
+    private static final byte HIT_SELF = 2;
+    private static final byte HIT_OTHER = 3;
+    private Boolean parallelTick = null;
+    private int arenaWidth = 0; // 0 = built-in level maps
+    private int arenaHeight = 0;
+    private long arenaSeed = 0;
+    private Long seed = null; // null = unseeded boards
+    private ReplayLog.Writer recorder = null;
+    private boolean ticking = false;
+    private boolean stopped = false;
+    // Earliest time (System.nanoTime) a parked snake is due to be dropped; 0 = none parked
+    private long parkedDeadline = 0;
+    private int[] oldTailX = new int[0];
+    private int[] oldTailY = new int[0];
+    private boolean[] tailReleased = new boolean[0];
+    private byte[] outcomes = new byte[0];
+    private int[] regionOrder = new int[0];
+    private int[] regionStart = new int[0];
+    private static final int LEVEL_UP_SCORE_THRESHOLD = 50;
+
+    // Delta protocol (see PlayerHandler "delta" command and SnakeClient)
+    static final String KEYFRAME_PREFIX = "@K";
+    static final String DELTA_PREFIX = "@D";
+    static final String FOOTER_PREFIX = "@S";
+    private static final int KEYFRAME_INTERVAL = 40; // Resync delta clients every N ticks
+    private char[][] lastFrame;
+    private int lastFrameLevel;
+    private String lastFooter = "";
+    private int ticksSinceKeyframe = 0;
+    private static final Frame EMPTY_FRAME = Frame.of("");
+    private final char[] topChars = new char[3];
+    private final int[] topScores = new int[3];
+    private int topCount = 0;
+    private int pointsToLevelUp = 0;
+    private Snake leader = null;
+    private String cachedFooter = "";
+    private int footerVersion = -1; // Leaderboard version the footer was built from
+    private int footerLevel = 0;
+
+    // A dropped connection's snake waits this long for its player (snake.resume.graceSeconds);
+    // 0 removes it straight away
+    static final long RESUME_GRACE_MILLIS = Long.getLong("snake.resume.graceSeconds", 15) * 1000;
+
+    // Spectators get a frame every SPECTATOR_EVERY_TICKS ticks (snake.spectator.everyTicks)
+    static final int SPECTATOR_EVERY_TICKS = Math.max(1, Integer.getInteger("snake.spectator.everyTicks", 2));
+    private final Viewport spectatorView = new Viewport();
+    private int ticksSinceSpectatorFrame = 0;
+
+    // The end of the last tick, for readers off the game thread (see GameState)
+    private volatile GameState state;
+    private long tickCount = 0;
+
+    public Game(List<PlayerHandler> players) {
+        this(players, 1);
+    }
+
+    public Game(List<PlayerHandler> players, int startLevel) {
+        this(players, startLevel, 1);
+    }
+
+    public Game(List<PlayerHandler> players, int startLevel, int roomId) {
+        this.players = players;
+        this.roomId = roomId;
+        this.currentLevel = startLevel;
+        this.gameSpeed = 250; // Slower start
+        this.board = new Board(this.currentLevel);
+        publishState();
+    }
+
+    // Plays on generated arenas of the given size instead of the built-in maps; each
+    // level gets a new arena. Call before anyone joins.
+    synchronized void useArena(int width, int height, long seed) {
+        this.arenaWidth = width;
+        this.arenaHeight = height;
+        this.arenaSeed = seed;
+        this.board = newBoard();
+        publishState();
+    }
+
+    // Seeds the boards of every level, so the same players and inputs give the same
+    // match. Call before anyone joins.
+    synchronized void useSeed(long seed) {
+        this.seed = seed;
+        this.board = newBoard();
+        publishState();
+    }
+
+    // Starts logging joins, leaves and turns (see ReplayLog); implies a seed
+    synchronized void recordTo(Path file) throws IOException {
+        if (seed == null) useSeed(System.nanoTime());
+        recorder = new ReplayLog.Writer(file, seed, currentLevel, arenaWidth, arenaHeight, arenaSeed);
+    }
+
+    private Board newBoard() {
+        if (arenaWidth > 0) {
+            return new Board(arenaWidth, arenaHeight, arenaSeed * 31 + currentLevel);
+        }
+        if (seed != null) {
+            return new Board(currentLevel, seed * 31 + currentLevel);
+        }
+        return new Board(currentLevel);
+    }
+
+    public synchronized void addNewPlayer(PlayerHandler player) {
+        if (recorder != null) recorder.join();
+        // Board only offers spawn cells clear of walls, fruit and other snakes
+        int spawnCell = board.pickSpawnCell();
+        if (spawnCell < 0) {
+            player.sendMessage("Sorry, the game is full or there's no space to spawn.");
+            player.closeConnection();
+            return;
+        }
+
+        Snake snake = new Snake(spawnCell % board.getWidth(), spawnCell / board.getWidth(), player.getPlayerChar());
+        snake.setOwnerToken(player.getToken());
+        player.setSnake(snake);
+        snakes.add(snake);
+        leaderboard.add(snake);
+        occupyBody(snake);
+        if (recorder != null) recorder.spawned(snake);
+    }
+
+    // Synchronized with the tick: players leave from their own threads
+    public synchronized void removeSnake(Snake snake) {
+        if (snakes.remove(snake)) {
+            releaseBody(snake);
+            leftGame(snake);
+        }
+    }
+
+    // Everything but the board cells: ranking, high score and the replay log
+    private void leftGame(Snake snake) {
+        if (snake.isParked()) parkedTokens.remove(snake.getOwnerToken());
+        leaderboard.remove(snake);
+        offerHighScore(snake);
+        if (recorder != null) {
+            // Deaths during a tick replay by themselves
+            if (ticking) recorder.died(snake); else recorder.leave(snake);
+        }
+    }
+
+    private void occupyBody(Snake snake) {
+        for (int i = 0; i < snake.getLength(); i++) {
+            board.occupy(snake.getX(i), snake.getY(i), snake.getId());
+        }
+    }
+
+    private void releaseBody(Snake snake) {
+        for (int i = 0; i < snake.getLength(); i++) {
+            board.release(snake.getX(i), snake.getY(i), snake.getId());
+        }
+    }
+
+    // Runs the change on the game thread before the next tick (or at RoomManager's next
+    // sweep once the room has stopped); never on the calling thread
+    public void enqueue(Runnable change) {
+        membershipChanges.add(change);
+    }
+
+    synchronized void applyMembershipChanges() {
+        Runnable change;
+        while ((change = membershipChanges.poll()) != null) {
+            change.run();
+        }
+    }
+
+    // Ticks run on the given executor every gameSpeed milliseconds
+    public void start(ScheduledExecutorService executor) {
+        scheduler = new TickScheduler(executor, this::step, gameSpeed);
+        scheduler.start();
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.stop();
+        }
+        synchronized (this) {
+            stopped = true;
+            // A win stops the game from inside its own tick: tick() closes the log once
+            // that tick is written, so a replay sees how the game ended
+            if (!ticking) closeRecorder();
+        }
+    }
+
+    private void closeRecorder() {
+        if (recorder != null) {
+            recorder.close();
+            recorder = null;
+        }
+    }
+
+    public boolean isRunning() {
+        return scheduler != null && scheduler.isRunning();
+    }
+
+    public int getTickPeriodMillis() {
+        return gameSpeed;
+    }
+
+    public int getRoomId() {
+        return roomId;
+    }
+
+    public List<PlayerHandler> getPlayers() {
+        return players;
+    }
+
+    public List<PlayerHandler> getSpectators() {
+        return spectators;
+    }
+
+    public int getSnakeCount() {
+        return state.getSnakeCount();
+    }
+
+    // Latest published state; safe to read from any thread without the game lock
+    public GameState getState() {
+        return state;
+    }
+
+    public TickStats getTickStats() {
+        return scheduler.getStats();
+    }
+
+    // One tick plus its broadcast. Normally run by the scheduler; GameBenchmark calls it directly.
+    synchronized void step() {
+        long start = System.nanoTime();
+        tick();
+        long ticked = System.nanoTime();
+        broadcastGameState(publishState());
+        Metrics.recordStep(ticked - start, System.nanoTime() - ticked);
+    }
+
+    // A tick runs in four phases. Phases 1 and 3 only touch per-snake state or read shared
+    // state, so on big games they run in parallel, one task per horizontal band of the
+    // board. Phases 2 and 4 write shared state (occupancy, fruit, removals) and always run
+    // serially in snake order, which is the deterministic merge: a parallel tick produces
+    // exactly what the same tick would produce on one thread, including when two heads
+    // enter the same cell across a band boundary.
+    synchronized void tick() {
+        // Before the tick, so the replay log sees joins, leaves, unclaimed snakes and
+        // extra bots outside it
+        applyMembershipChanges();
+        expireParkedSnakes();
+        balanceBots();
+        tickCount++;
+        ticking = true;
+        try {
+            runTick();
+        } finally {
+            ticking = false;
+        }
+        if (recorder != null) recorder.tick(this::stateHash);
+        if (stopped) closeRecorder();
+    }
+
+    private void runTick() {
+        thinkBots();
+        applyQueuedTurns();
+        if (snakes.isEmpty()) return;
+
+        // Parked snakes (waiting for their player) stay where they are
+        Snake[] moving = parkedDeadline == 0
+                ? snakes.toArray(new Snake[0])
+                : snakes.stream().filter(snake -> !snake.isParked()).toArray(Snake[]::new);
+        int count = moving.length;
+        prepareTickBuffers(moving);
+        boolean parallel = parallelTick != null ? parallelTick : MULTI_CORE && count >= PARALLEL_MIN_SNAKES;
+
+        // Phase 1: move all snakes, remembering where each tail was
+        forEachByRegion(parallel, i -> {
+            Snake snake = moving[i];
+            int oldLength = snake.getLength();
+            oldTailX[i] = snake.getTailX();
+            oldTailY[i] = snake.getTailY();
+            snake.move();
+            tailReleased[i] = snake.getLength() == oldLength;
+        });
+
+        // Phase 2: merge the moves into the occupancy grid
+        for (int i = 0; i < count; i++) {
+            Snake snake = moving[i];
+            board.occupy(snake.getHeadX(), snake.getHeadY(), snake.getId());
+            if (tailReleased[i]) {
+                board.release(oldTailX[i], oldTailY[i], snake.getId());
+            }
+        }
+
+        // Phase 3: classify every head against walls and other segments
+        Occupancy occupancy = board.getOccupancy();
+        forEachByRegion(parallel, i -> {
+            Snake snake = moving[i];
+            int headX = snake.getHeadX();
+            int headY = snake.getHeadY();
+            if (board.isWall(headX, headY)) {
+                outcomes[i] = HIT_WALL;
+            } else if (!occupancy.isCrowded(headX, headY)) {
+                outcomes[i] = HIT_NOTHING;
+            } else if (occupancy.isSelfCollision(headX, headY, snake.getId())) {
+                outcomes[i] = HIT_SELF;
+            } else {
+                outcomes[i] = HIT_OTHER;
+            }
+        });
+
+        // Phase 4: apply collisions and fruit
+        List<Snake> snakesToRemove = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Snake snake = moving[i];
+            int headX = snake.getHeadX();
+            int headY = snake.getHeadY();
+
+            // Check wall collision
+            if (outcomes[i] == HIT_WALL) {
+                Metrics.WALL_COLLISIONS.increment();
+                PlayerHandler player = findPlayer(snake);
+                if (player != null) player.sendMessage("DEBUG: Wall collision at (" + headX + ", " + headY + ")");
+                snakesToRemove.add(snake);
+                continue;
+            }
+            // Check self-collision
+            if (outcomes[i] == HIT_SELF) {
+                Metrics.SELF_COLLISIONS.increment();
+                PlayerHandler player = findPlayer(snake);
+                if (player != null) {
+                    StringBuilder bodyState = new StringBuilder("DEBUG: Self collision. Body: ");
+                    snake.forEachSegment((x, y) -> bodyState.append("(").append(x).append(",").append(y).append(") "));
+                    player.sendMessage(bodyState.toString());
+                }
+                snakesToRemove.add(snake);
+                continue;
+            }
+            // Collision with other snakes
+            if (outcomes[i] == HIT_OTHER) {
+                Metrics.OTHER_COLLISIONS.increment();
+                PlayerHandler player = findPlayer(snake);
+                if (player != null) player.sendMessage("DEBUG: Other snake collision");
+                snakesToRemove.add(snake);
+            }
+            // Check for fruit
+            char cellContent = board.getCell(headX, headY);
+            if (cellContent >= '1' && cellContent <= '9') {
+                Metrics.FRUIT_EATEN.increment();
+                int fruitValue = Character.getNumericValue(cellContent);
+                leaderboard.addScore(snake, fruitValue);
+                snake.grow(); // Grow by 1 segment
+                board.setCell(headX, headY, ' ');
+                board.placeFruit();
+            }
+        }
+
+        for (Snake snake : snakesToRemove) {
+            PlayerHandler player = findPlayer(snake);
+            removeSnake(snake); // First, so closing the connection does not park a dead snake
+            if (player != null) {
+                player.sendGameOver();
+                player.closeConnection();
+            }
+        }
+
+        checkLevelUp();
+    }
+
+    // One turn per snake per tick, in the order they were typed; turns that would not
+    // change anything are skipped so they do not cost a tick
+    private void applyQueuedTurns() {
+        applyQueuedTurns(players);
+        applyQueuedTurns(bots);
+    }
+
+    private void applyQueuedTurns(List<? extends PlayerHandler> handlers) {
+        for (PlayerHandler player : handlers) {
+            Snake snake = player.getSnake();
+            if (snake == null) continue;
+            Snake.Direction turn;
+            while ((turn = player.getInputs().poll()) != null) {
+                if (snake.setDirection(turn)) {
+                    if (recorder != null) recorder.turn(snake, turn);
+                    break;
+                }
+            }
+        }
+    }
+
+    // Snapshot format (all numbers varints unless noted):
+    //   "SNKS" <version u8> <room> <level> <tick period ms>
+    //   <arena width> <arena height> <arena seed i64> <seeded u8> <seed i64>
+    //   <width> <height> <width * height cell bytes: walls and fruit>
+    //   <snake count>, then per snake: <char u8> <owner token i64> <direction u8> <score>
+    //                                  <growth pending> <length> <length cells, y * width + x>
+    private static final byte[] SNAPSHOT_MAGIC = {'S', 'N', 'K', 'S'};
+    private static final int SNAPSHOT_VERSION = 1;
+
+    // The whole game as bytes, from the last published state: it takes no lock and never
+    // holds up a tick. Writing the bytes to disk is up to the caller.
+    public byte[] snapshot() {
+        GameState saved = state; // Read first: the arena and seed were set before it was published
+        BinaryProtocol.Writer out = new BinaryProtocol.Writer();
+        out.writeBytes(SNAPSHOT_MAGIC);
+        out.writeByte(SNAPSHOT_VERSION);
+        out.writeVarint(roomId);
+        // A won game is one past the last level; it comes back on the last one
+        out.writeVarint(Math.min(saved.getLevel(), Board.getMaxLevels()));
+        out.writeVarint(saved.getTickPeriodMillis());
+        out.writeVarint(arenaWidth);
+        out.writeVarint(arenaHeight);
+        out.writeLong(arenaSeed);
+        out.writeByte(seed != null ? 1 : 0);
+        out.writeLong(seed != null ? seed : 0);
+
+        out.writeVarint(saved.getWidth());
+        out.writeVarint(saved.getHeight());
+        for (char[] row : saved.copyBoardCells()) {
+            for (char cell : row) {
+                out.writeByte(cell);
+            }
+        }
+
+        // Bots are not saved: the restored room brings in new ones
+        int humans = 0;
+        for (int s = 0; s < saved.getSnakeCount(); s++) {
+            if (!saved.isBot(s)) humans++;
+        }
+        out.writeVarint(humans);
+        for (int s = 0; s < saved.getSnakeCount(); s++) {
+            if (saved.isBot(s)) continue;
+            out.writeByte(saved.getBodyChar(s));
+            out.writeLong(saved.getOwnerToken(s));
+            out.writeByte(saved.getDirection(s).ordinal());
+            out.writeVarint(saved.getScore(s));
+            out.writeVarint(saved.getGrowthPending(s));
+            out.writeVarint(saved.getLength(s));
+            for (int i = 0; i < saved.getLength(s); i++) {
+                out.writeVarint(saved.getCell(s, i));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    // Rebuilds a game from snapshot(). Its snakes stay parked until their players come
+    // back with reclaim(); the ones nobody claims within graceMillis are removed.
+    public static Game restore(byte[] data, List<PlayerHandler> players, long graceMillis) throws IOException {
+        BinaryProtocol.Reader in = new BinaryProtocol.Reader(data, 0, data.length);
+        for (byte b : SNAPSHOT_MAGIC) {
+            if (in.readByte() != (b & 0xFF)) throw new IOException("Not a snapshot");
+        }
+        int version = in.readByte();
+        if (version != SNAPSHOT_VERSION) throw new IOException("Unsupported snapshot version " + version);
+
+        int roomId = in.readVarint();
+        int level = in.readVarint();
+        if (level < 1 || level > Board.getMaxLevels()) {
+            throw new IOException("Corrupt snapshot: level " + level + " of " + Board.getMaxLevels());
+        }
+        Game game = new Game(players, level, roomId);
+        game.gameSpeed = in.readVarint();
+        game.arenaWidth = in.readVarint();
+        game.arenaHeight = in.readVarint();
+        game.arenaSeed = in.readLong();
+        boolean seeded = in.readByte() != 0;
+        long seed = in.readLong();
+        game.seed = seeded ? seed : null;
+
+        int width = in.readVarint();
+        int height = in.readVarint();
+        if (width < 1 || height < 1 || (long) width * height > data.length) {
+            throw new IOException("Corrupt snapshot: board of " + width + "x" + height);
+        }
+        char[][] grid = new char[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                grid[y][x] = (char) in.readByte();
+            }
+        }
+        game.board = new Board(grid);
+
+        long deadline = System.nanoTime() + graceMillis * 1_000_000L;
+        int snakeCount = in.readVarint();
+        for (int s = 0; s < snakeCount; s++) {
+            char bodyChar = (char) in.readByte();
+            long owner = in.readLong();
+            int directionIndex = in.readByte();
+            if (directionIndex >= Snake.Direction.values().length) {
+                throw new IOException("Corrupt snapshot: bad direction " + directionIndex + " for snake " + s);
+            }
+            Snake.Direction direction = Snake.Direction.values()[directionIndex];
+            int score = in.readVarint();
+            int growthPending = in.readVarint();
+            int length = in.readVarint();
+            if (length < 1 || length > width * height) {
+                throw new IOException("Corrupt snapshot: bad length " + length + " for snake " + s);
+            }
+            int[] xs = new int[length];
+            int[] ys = new int[length];
+            for (int i = 0; i < length; i++) {
+                int cell = in.readVarint();
+                if (cell < 0 || cell >= width * height) {
+                    throw new IOException("Corrupt snapshot: cell " + cell + " off the board for snake " + s);
+                }
+                xs[i] = cell % width;
+                ys[i] = cell / width;
+            }
+            Snake snake = Snake.restore(bodyChar, direction, score, growthPending, xs, ys);
+            snake.setOwnerToken(owner);
+            snake.park(deadline);
+            game.parkedTokens.add(owner);
+            game.snakes.add(snake);
+            game.leaderboard.add(snake);
+            game.occupyBody(snake);
+            game.parkedDeadline = deadline;
+        }
+        game.publishState();
+        return game;
+    }
+
+    // Freezes the snake of a dropped connection for graceMillis, so its player can come
+    // back with reclaim(); removed once the grace runs out
+    public synchronized void park(Snake snake, long graceMillis) {
+        if (!snakes.contains(snake)) {
+            parkedTokens.remove(snake.getOwnerToken()); // Gone before parkLater's turn came
+            return;
+        }
+        long deadline = System.nanoTime() + graceMillis * 1_000_000L;
+        snake.park(deadline);
+        parkedTokens.add(snake.getOwnerToken());
+        if (parkedDeadline == 0 || deadline - parkedDeadline < 0) {
+            parkedDeadline = deadline;
+        }
+        if (recorder != null) recorder.park(snake);
+    }
+
+    // park() from a connection thread, before the next tick. The token counts as parked
+    // right away, so a player that reconnects before then can already reclaim the snake
+    // (the reclaim is queued behind the park).
+    public void parkLater(Snake snake, long graceMillis) {
+        parkedTokens.add(snake.getOwnerToken());
+        enqueue(() -> park(snake, graceMillis));
+    }
+
+    // Lock-free, for connection threads; the answer may be stale by the time they act on it
+    public boolean hasParkedSnake(long token) {
+        return parkedTokens.contains(token);
+    }
+
+    // Gives a parked snake back to the player that owned it; false if there is none
+    public synchronized boolean reclaim(long token, PlayerHandler player) {
+        Snake snake = findParked(token);
+        if (snake == null) return false;
+        unpark(snake);
+        player.setSnake(snake);
+        return true;
+    }
+
+    synchronized void unpark(Snake snake) {
+        snake.unpark();
+        parkedTokens.remove(snake.getOwnerToken());
+        updateParkedDeadline();
+        if (recorder != null) recorder.resume(snake);
+    }
+
+    public boolean hasParkedSnakes() {
+        return !parkedTokens.isEmpty();
+    }
+
+    private Snake findParked(long token) {
+        if (parkedDeadline == 0) return null;
+        for (Snake snake : snakes) {
+            if (snake.isParked() && snake.getOwnerToken() == token) return snake;
+        }
+        return null;
+    }
+
+    // Removes parked snakes whose grace ran out. Runs before every tick; once the room has
+    // stopped ticking, RoomManager's sweep calls it instead.
+    synchronized void expireParkedSnakes() {
+        if (parkedDeadline != 0 && System.nanoTime() - parkedDeadline > 0) {
+            dropExpiredParkedSnakes();
+        }
+    }
+
+    private void dropExpiredParkedSnakes() {
+        long now = System.nanoTime();
+        for (Snake snake : new ArrayList<>(snakes)) {
+            if (snake.isParked() && now - snake.getParkedUntil() > 0) removeSnake(snake);
+        }
+        updateParkedDeadline();
+    }
+
+    private void updateParkedDeadline() {
+        parkedDeadline = 0;
+        for (Snake snake : snakes) {
+            if (snake.isParked() && (parkedDeadline == 0 || snake.getParkedUntil() - parkedDeadline < 0)) {
+                parkedDeadline = snake.getParkedUntil();
+            }
+        }
+    }
+
+    // Cheap fingerprint of the game state for replay checks
+    synchronized int stateHash() {
+        int hash = currentLevel;
+        for (Snake snake : snakes) {
+            hash = hash * 31 + snake.getScore();
+            for (int i = 0; i < snake.getLength(); i++) {
+                hash = hash * 31 + snake.getY(i) * board.getWidth() + snake.getX(i);
+            }
+        }
+        for (char[] row : board.getGrid()) {
+            hash = hash * 31 + Arrays.hashCode(row);
+        }
+        return hash;
+    }
+
+    private void prepareTickBuffers(Snake[] moving) {
+        int count = moving.length;
+        if (outcomes.length < count) {
+            int capacity = Math.max(count, outcomes.length * 2);
+            oldTailX = new int[capacity];
+            oldTailY = new int[capacity];
+            tailReleased = new boolean[capacity];
+            outcomes = new byte[capacity];
+            regionOrder = new int[capacity];
+        }
+
+        // Group snake indexes by the band their head is in (counting sort)
+        int regions = Math.max(1, Math.min(REGION_COUNT, board.getHeight()));
+        if (regionStart.length != regions + 1) {
+            regionStart = new int[regions + 1];
+        }
+        Arrays.fill(regionStart, 0);
+        for (Snake snake : moving) {
+            regionStart[regionOf(snake, regions) + 1]++;
+        }
+        for (int r = 0; r < regions; r++) {
+            regionStart[r + 1] += regionStart[r];
+        }
+        int[] next = regionStart.clone();
+        for (int i = 0; i < count; i++) {
+            regionOrder[next[regionOf(moving[i], regions)]++] = i;
+        }
+    }
+
+    private int regionOf(Snake snake, int regions) {
+        int y = Math.max(0, Math.min(board.getHeight() - 1, snake.getHeadY()));
+        return (int) ((long) y * regions / board.getHeight());
+    }
+
+    // Runs work for every snake index, grouped by region, in parallel or not
+    private void forEachByRegion(boolean parallel, IntConsumer work) {
+        int regions = regionStart.length - 1;
+        IntConsumer region = r -> {
+            for (int k = regionStart[r]; k < regionStart[r + 1]; k++) {
+                work.accept(regionOrder[k]);
+            }
+        };
+        if (parallel) {
+            IntStream.range(0, regions).parallel().forEach(region);
+        } else {
+            for (int r = 0; r < regions; r++) {
+                region.accept(r);
+            }
+        }
+    }
+
+    // null = automatic (parallel from PARALLEL_MIN_SNAKES snakes up, on more than one core)
+    void setParallelTick(Boolean parallelTick) {
+        this.parallelTick = parallelTick;
+    }
+
+    // Only needed when something happens to a snake, not on every tick
+    private PlayerHandler findPlayer(Snake snake) {
+        for (PlayerHandler p : players) {
+            if (p.getSnake() == snake) {
+                return p;
+            }
+        }
+        for (BotPlayer bot : bots) {
+            if (bot.getSnake() == snake) {
+                return bot;
+            }
+        }
+        return null;
+    }
+
+    // Keeps players + bots at botFill: adds a bot while there is space, and takes one out
+    // while people need the seats. One per tick, so bot spawns spread out.
+    private void balanceBots() {
+        // A bot whose snake is gone no longer holds a seat
+        bots.removeIf(bot -> bot.getSnake() == null);
+        int total = players.size() + bots.size();
+        if (total < botFill && board.hasSpawnCell()) {
+            // Only with a free spawn cell, so a full board does not log a JOIN per tick
+            BotPlayer bot = new BotPlayer(this);
+            bots.add(bot);
+            addNewPlayer(bot);
+        } else if (total > botFill && !bots.isEmpty()) {
+            BotPlayer bot = bots.remove(bots.size() - 1);
+            if (bot.getSnake() != null) removeSnake(bot.getSnake());
+        }
+    }
+
+    private void thinkBots() {
+        if (bots.isEmpty()) return;
+        if (pathfinder == null || !pathfinder.fits(board)) {
+            pathfinder = new Pathfinder(board.getWidth(), board.getHeight());
+        }
+        pathfinder.markHeads(snakes);
+        for (BotPlayer bot : bots) {
+            bot.think(pathfinder, board);
+        }
+    }
+
+    // Snakes the server plays to keep the room at this many snakes (0 = no bots)
+    public synchronized void setBotFill(int botFill) {
+        this.botFill = botFill;
+    }
+
+    public synchronized void setHighScores(HighScores highScores) {
+        this.highScores = highScores;
+    }
+
+    // A snake's score is final once it leaves the game, or once the game is won; bots do
+    // not count. After a win the snakes stay on the board, so they are not offered again
+    // when they leave.
+    private void offerHighScore(Snake snake) {
+        if (highScores != null && !won && snake.getBodyChar() != BotPlayer.BOT_CHAR) {
+            highScores.offer(snake.getBodyChar(), snake.getScore(), Math.min(currentLevel, Board.getMaxLevels()));
+        }
+    }
+
+    public List<BotPlayer> getBots() {
+        return bots;
+    }
+
+    // Keeps a headless game on its starting level (benchmarks)
+    void setLevelLocked(boolean levelLocked) {
+        this.levelLocked = levelLocked;
+    }
+
+    public int getCurrentLevel() {
+        return currentLevel;
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+
+    // Full ANSI screen as sent to legacy clients
+    synchronized String renderScreen() {
+        char[][] frame = composeFrame();
+        return render(frame, renderFooter(), 0, 0, frame[0].length, frame.length);
+    }
+
+    private void checkLevelUp() {
+        if (levelLocked) return;
+
+        if (leaderboard.getTotalScore() >= (currentLevel * LEVEL_UP_SCORE_THRESHOLD)) {
+            nextLevel();
+        }
+    }
+
+    private void nextLevel() {
+        currentLevel++;
+        if (currentLevel > Board.getMaxLevels()) {
+            broadcastMessage("YOU WIN! All levels completed!");
+            for (Snake snake : snakes) {
+                offerHighScore(snake);
+            }
+            won = true;
+            stop();
+            return;
+        }
+
+        broadcastMessage("LEVEL UP! Welcome to Level " + currentLevel);
+        gameSpeed *= 0.8; // Increase speed by 20%
+        if (scheduler != null) {
+            scheduler.setPeriodMillis(gameSpeed);
+        }
+        board = newBoard();
+
+        // Reset all snakes to new positions; each one claims its cells before the
+        // next picks, so they cannot overlap
+        for (Snake snake : new ArrayList<>(snakes)) {
+            int spawnCell = board.pickSpawnCell();
+            if (spawnCell < 0) {
+                // Not enough spawn points, remove extra snakes (should not happen with good level design).
+                // Their cells were on the old board, so there is nothing to release.
+                PlayerHandler player = findPlayer(snake);
+                snakes.remove(snake);
+                leftGame(snake);
+                if (player != null) {
+                    player.sendMessage("No room for your snake on level " + currentLevel);
+                    player.sendGameOver();
+                    player.closeConnection();
+                }
+                continue;
+            }
+            snake.reset(spawnCell % board.getWidth(), spawnCell / board.getWidth());
+            occupyBody(snake);
+        }
+    }
+
+    // Encoded once per protocol, written to every connection
+    private void broadcastMessage(String message) {
+        Frame text = Frame.of(message);
+        Frame binary = BinaryProtocol.text(message);
+        for (PlayerHandler player : players) {
+            player.sendFrame(player.isBinary() ? binary : text);
+        }
+        for (PlayerHandler spectator : spectators) {
+            spectator.sendFrame(spectator.isBinary() ? binary : text);
+        }
+    }
+
+    // Every player gets the window of the shared frame around its own snake (see
+    // Viewport), so what each one is sent depends on the window size, not the board
+    // size. Players looking at the same window share the encoded frame; players whose
+    // window shows nothing new get nothing.
+    private void broadcastGameState(GameState current) {
+        char[][] frame = current.getFrame();
+        String footer = renderFooter();
+
+        boolean boardChanged = lastFrame == null
+                || lastFrame.length != frame.length
+                || lastFrame[0].length != frame[0].length
+                || lastFrameLevel != currentLevel;
+        boolean forceKeyframe = boardChanged || ++ticksSinceKeyframe >= KEYFRAME_INTERVAL;
+        boolean footerChanged = !footer.equals(lastFooter);
+
+        Map<Long, Frame> fullScreens = new HashMap<>();
+        Map<Long, Frame> keyframes = new HashMap<>();
+        Map<Long, Frame> deltas = new HashMap<>();
+        Map<Long, Frame> binaryKeyframes = new HashMap<>();
+        Map<Long, Frame> binaryDeltas = new HashMap<>();
+        Map<Long, Boolean> unchangedViews = new HashMap<>();
+        BinaryProtocol.Writer scores = null;
+
+        for (PlayerHandler player : players) {
+            Viewport view = player.getViewport();
+            view.follow(player.getSnake(), board.getWidth(), board.getHeight());
+            long key = view.key();
+            boolean resync = view.hasMoved() | player.takeKeyframeRequest();
+            view.markSent();
+            boolean binary = player.isBinary();
+            if (binary && scores == null) {
+                scores = BinaryProtocol.scores(pointsToLevelUp, topChars, topScores, topCount);
+            }
+            BinaryProtocol.Writer tickScores = scores;
+
+            if (!player.isDeltaMode()) {
+                if (!boardChanged && !resync && !footerChanged
+                        && unchangedViews.computeIfAbsent(key, k -> isUnchanged(lastFrame, frame, view))) {
+                    continue;
+                }
+                if (binary) {
+                    player.sendFrame(binaryKeyframes.computeIfAbsent(key, k ->
+                            BinaryProtocol.keyframe(currentLevel, frame, view, tickScores)));
+                } else {
+                    player.sendFrame(fullScreens.computeIfAbsent(key, k -> Frame.of(render(frame, footer,
+                            view.getX(), view.getY(), view.getWidth(), view.getHeight()))));
+                }
+                continue;
+            }
+
+            if (forceKeyframe || resync) {
+                if (binary) {
+                    player.sendFrame(binaryKeyframes.computeIfAbsent(key, k ->
+                            BinaryProtocol.keyframe(currentLevel, frame, view, tickScores)));
+                } else {
+                    player.sendFrame(keyframes.computeIfAbsent(key, k -> Frame.of(renderKeyframe(frame, footer, view))));
+                }
+                continue;
+            }
+
+            Frame delta;
+            if (binary) {
+                delta = binaryDeltas.computeIfAbsent(key, k -> {
+                    Frame changes = BinaryProtocol.delta(lastFrame, frame, view, footerChanged ? tickScores : null);
+                    return changes == null ? EMPTY_FRAME : changes;
+                });
+            } else {
+                delta = deltas.computeIfAbsent(key, k -> {
+                    String changes = renderDelta(lastFrame, frame, footerChanged ? footer : null, view);
+                    return changes.isEmpty() ? EMPTY_FRAME : Frame.of(changes);
+                });
+            }
+            if (delta != EMPTY_FRAME) {
+                player.sendFrame(delta);
+            }
+        }
+
+        broadcastToSpectators(frame, footer);
+
+        if (forceKeyframe) ticksSinceKeyframe = 0;
+        lastFrame = frame;
+        lastFrameLevel = currentLevel;
+        lastFooter = footer;
+    }
+
+    // Spectators share one window that follows the leader, and one whole-screen frame per
+    // protocol (no deltas), sent at a lower rate. Serving more of them costs one queue
+    // offer each, not any rendering.
+    private void broadcastToSpectators(char[][] frame, String footer) {
+        if (spectators.isEmpty() || ++ticksSinceSpectatorFrame < SPECTATOR_EVERY_TICKS) return;
+        ticksSinceSpectatorFrame = 0;
+
+        spectatorView.follow(leader, board.getWidth(), board.getHeight());
+        Frame text = null;
+        Frame binary = null;
+        for (PlayerHandler spectator : spectators) {
+            if (spectator.isBinary()) {
+                if (binary == null) {
+                    binary = BinaryProtocol.keyframe(currentLevel, frame, spectatorView,
+                            BinaryProtocol.scores(pointsToLevelUp, topChars, topScores, topCount));
+                }
+                spectator.sendFrame(binary);
+            } else {
+                if (text == null) {
+                    text = Frame.of(render(frame, footer, spectatorView.getX(), spectatorView.getY(),
+                            spectatorView.getWidth(), spectatorView.getHeight()));
+                }
+                spectator.sendFrame(text);
+            }
+        }
+    }
+
+    private static boolean isUnchanged(char[][] previous, char[][] frame, Viewport view) {
+        int right = view.getX() + view.getWidth();
+        for (int y = view.getY(); y < view.getY() + view.getHeight(); y++) {
+            if (!Arrays.equals(previous[y], view.getX(), right, frame[y], view.getX(), right)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Called by the game thread with the lock held, after anything that changes the board;
+    // the frame it composes is also the one broadcast this tick
+    private GameState publishState() {
+        GameState current = new GameState(tickCount, currentLevel, gameSpeed, composeFrame(), snakes);
+        state = current;
+        return current;
+    }
+
+    // Board cells with every snake drawn on top; the picture both protocols describe
+    private char[][] composeFrame() {
+        char[][] grid = board.getGrid();
+        char[][] tempGrid = new char[grid.length][];
+        for (int i = 0; i < grid.length; i++) {
+            tempGrid[i] = grid[i].clone();
+        }
+
+        int width = board.getWidth();
+        int height = board.getHeight();
+        for (Snake snake : snakes) {
+            char bodyChar = snake.getBodyChar();
+            // Tail first so the head ends up on top
+            for (int i = snake.getLength() - 1; i >= 0; i--) {
+                int x = snake.getX(i);
+                int y = snake.getY(i);
+                if (y >= 0 && y < height && x >= 0 && x < width) {
+                    tempGrid[y][x] = i == 0 ? 'O' : bodyChar;
+                }
+            }
+        }
+        return tempGrid;
+    }
+
+    private String render(char[][] frame, String footer, int left, int top, int width, int height) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("\033[H\033[2J");
+        sb.append("--- Snake vs Snakes --- Level: ").append(currentLevel).append(" ---\n");
+        for (int y = top; y < top + height; y++) {
+            sb.append(frame[y], left, width).append("\n");
+        }
+        sb.append(footer);
+        return sb.toString();
+    }
+
+    // "@K <level> <width> <height> <x> <y>" followed by one line per row of the window,
+    // then the footer. x and y are where the window sits on the board.
+    private String renderKeyframe(char[][] frame, String footer, Viewport view) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(KEYFRAME_PREFIX).append(' ').append(currentLevel).append(' ')
+          .append(view.getWidth()).append(' ').append(view.getHeight()).append(' ')
+          .append(view.getX()).append(' ').append(view.getY()).append('\n');
+        for (int y = view.getY(); y < view.getY() + view.getHeight(); y++) {
+            sb.append(frame[y], view.getX(), view.getWidth()).append('\n');
+        }
+        appendFooterLine(sb, footer);
+        return sb.toString();
+    }
+
+    // "@D;x,y,c;x,y,c..." with only the cells of the window that changed since the previous
+    // tick, in window coordinates, preceded by an "@S" footer line when the scoreboard
+    // changed. Empty if nothing changed.
+    private String renderDelta(char[][] previous, char[][] frame, String changedFooter, Viewport view) {
+        StringBuilder sb = new StringBuilder();
+        if (changedFooter != null) {
+            appendFooterLine(sb, changedFooter);
+            sb.append('\n');
+        }
+        int changes = 0;
+        for (int y = 0; y < view.getHeight(); y++) {
+            char[] row = frame[view.getY() + y];
+            char[] previousRow = previous[view.getY() + y];
+            for (int x = 0; x < view.getWidth(); x++) {
+                char cell = row[view.getX() + x];
+                if (cell != previousRow[view.getX() + x]) {
+                    if (changes++ == 0) sb.append(DELTA_PREFIX);
+                    sb.append(';').append(x).append(',').append(y).append(',').append(cell);
+                }
+            }
+        }
+        if (changes == 0 && sb.length() > 0) {
+            sb.setLength(sb.length() - 1); // Drop the newline after the footer
+        }
+        return sb.toString();
+    }
+
+    // "@S line|line|..." so the multi-line footer fits in a single protocol line
+    private void appendFooterLine(StringBuilder sb, String footer) {
+        sb.append(FOOTER_PREFIX).append(' ').append(footer.replace('\n', '|'));
+    }
+
+    // Also keeps the top 3 and the points to level up for binary SCORES messages. Only
+    // rebuilt when a score, a snake or the level changed since the last call.
+    private String renderFooter() {
+        if (leaderboard.getVersion() == footerVersion && currentLevel == footerLevel) {
+            return cachedFooter;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("--- Top 3 Players ---\n");
+        Iterator<Snake> ranking = leaderboard.iterator();
+        int rank = 1;
+        while (rank <= 3 && ranking.hasNext()) {
+            Snake snake = ranking.next();
+            sb.append(rank).append(". Player '").append(snake.getBodyChar()).append("': ").append(snake.getScore()).append("\n");
+            topChars[rank - 1] = snake.getBodyChar();
+            topScores[rank - 1] = snake.getScore();
+            rank++;
+        }
+        topCount = rank - 1;
+        leader = leaderboard.getLeader();
+        pointsToLevelUp = Math.max(0, (currentLevel * LEVEL_UP_SCORE_THRESHOLD) - leaderboard.getTotalScore());
+        sb.append("--------------------\n");
+        sb.append("Level Up In: ").append(pointsToLevelUp).append(" points\n");
+
+        cachedFooter = sb.toString();
+        footerVersion = leaderboard.getVersion();
+        footerLevel = currentLevel;
+        return cachedFooter;
+    }
+}
@@ -0,0 +1,233 @@
+package snake;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Headless benchmark of the engine hot paths. No sockets: players are SinkPlayers that
+// count the bytes they would have sent and steer away from whatever is in front of them,
+// and dead ones respawn so the population stays constant. Reports throughput and, like
+// JMH's -prof gc, the bytes allocated per operation and the allocation rate.
+//
+//   java snake.GameBenchmark
+//   java snake.GameBenchmark players=10,100 lengths=3,50 levels=1,4 bots=20,100
+//
+// GameJmh runs the Game.step and render cases under JMH instead (see pom.xml).
+//
+// The bot cases fill a room with server-side bots (BotPlayer) and time one Pathfinder
+// decision and a whole Game.tick with all of them thinking.
+//
+// Each case runs WARMUP_ITERATIONS then MEASURED_ITERATIONS timed iterations on one thread.
+public class GameBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 200_000_000L;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        int[] playerCounts = {1, 10, 50};
+        int[] lengths = {3, 20, 100};
+        int[] levels = {1, 2, 3, 4};
+        int[] botCounts = {20, 100};
+        for (String arg : args) {
+            String[] parts = arg.split("=", 2);
+            if (parts.length != 2) {
+                System.err.println("Usage: java snake.GameBenchmark [players=1,10] [lengths=3,20] [levels=1,4] [bots=20,100]");
+                return;
+            }
+            int[] values = Arrays.stream(parts[1].split(",")).mapToInt(Integer::parseInt).toArray();
+            switch (parts[0]) {
+                case "players": playerCounts = values; break;
+                case "lengths": lengths = values; break;
+                case "levels": levels = values; break;
+                case "bots": botCounts = values; break;
+                default:
+                    System.err.println("Unknown parameter: " + parts[0]);
+                    return;
+            }
+        }
+
+        System.out.printf("%-26s %-26s %14s %12s %10s%n", "Benchmark", "Params", "ops/s", "B/op", "MB/s");
+
+        for (int level : levels) {
+            for (int players : playerCounts) {
+                for (int length : lengths) {
+                    String params = "level=" + level + " players=" + players + " length=" + length;
+                    HeadlessGame game = new HeadlessGame(level, players, length);
+                    measure("Game.step", params, game::step);
+                    measure("Game.render", params, () -> sink += game.game.renderScreen().length());
+                }
+            }
+        }
+
+        for (int length : lengths) {
+            Snake moving = snakeOfLength(length);
+            measure("Snake.move", "length=" + length, moving::move);
+            Snake still = snakeOfLength(length);
+            measure("Snake.checkSelfCollision", "length=" + length, () -> sink += still.checkSelfCollision() ? 1 : 0);
+        }
+
+        for (int level : levels) {
+            measure("new Board", "level=" + level, () -> sink += new Board(level).getWidth());
+            Board board = new Board(level);
+            measure("Board.getSafeSpawnPoints", "level=" + level, () -> sink += board.getSafeSpawnPoints().size());
+            measure("Board.pickSpawnCell", "level=" + level, () -> sink += board.pickSpawnCell());
+        }
+
+        // The built-in maps only fit a few dozen snakes, so bots are also timed on an arena
+        for (int bots : botCounts) {
+            for (int level : levels) {
+                Game game = new Game(new CopyOnWriteArrayList<>(), level);
+                measureBots(game, bots, "level=" + level);
+            }
+            Game arena = new Game(new CopyOnWriteArrayList<>(), 1);
+            arena.useArena(200, 200, 1);
+            measureBots(arena, bots, "arena=200x200");
+        }
+
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    private static void measure(String name, String params, Runnable op) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runIteration(op);
+        }
+        long ops = 0;
+        long nanos = 0;
+        long allocated = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            ops += runIteration(op);
+            nanos += System.nanoTime() - start;
+            allocated += THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        }
+        double seconds = nanos / 1e9;
+        System.out.printf("%-26s %-26s %14.0f %12.1f %10.1f%n",
+                name, params, ops / seconds, (double) allocated / ops, allocated / seconds / (1024 * 1024));
+    }
+
+    private static void measureBots(Game game, int bots, String where) {
+        game.setLevelLocked(true);
+        game.setBotFill(bots);
+        for (int i = 0; i < bots * 2; i++) {
+            game.tick(); // One bot joins per tick
+        }
+        String params = where + " bots=" + game.getBots().size();
+        List<Snake> snakes = new ArrayList<>();
+        for (BotPlayer bot : game.getBots()) {
+            if (bot.getSnake() != null) snakes.add(bot.getSnake());
+        }
+        if (!snakes.isEmpty()) {
+            Board board = game.getBoard();
+            Pathfinder pathfinder = new Pathfinder(board.getWidth(), board.getHeight());
+            pathfinder.markHeads(snakes);
+            int[] next = {0};
+            measure("Pathfinder.choose", params, () -> {
+                Snake.Direction direction = pathfinder.choose(board, snakes.get(next[0]++ % snakes.size()));
+                sink += direction == null ? 0 : direction.ordinal();
+            });
+        }
+        measure("Game.tick (bots)", params, game::tick);
+    }
+
+    // Runs op in batches until the iteration time is used up, returns the op count
+    private static long runIteration(Runnable op) {
+        long deadline = System.nanoTime() + ITERATION_NANOS;
+        long ops = 0;
+        do {
+            for (int i = 0; i < 64; i++) {
+                op.run();
+            }
+            ops += 64;
+        } while (System.nanoTime() < deadline);
+        return ops;
+    }
+
+    private static Snake snakeOfLength(int length) {
+        Snake snake = new Snake(2, 0, 'a');
+        while (snake.getLength() < length) {
+            snake.grow();
+            snake.move();
+        }
+        return snake;
+    }
+
+    // A Game with no network: fixed level, constant population of steering sink players.
+    // GameJmh runs the same game under JMH.
+    static class HeadlessGame {
+        final List<PlayerHandler> players = new CopyOnWriteArrayList<>();
+        final Game game;
+        private final List<SinkPlayer> sinks = new ArrayList<>();
+        private final int length;
+
+        HeadlessGame(int level, int playerCount, int length) {
+            this.game = new Game(players, level);
+            this.length = length;
+            game.setLevelLocked(true);
+            for (int i = 0; i < playerCount; i++) {
+                SinkPlayer player = new SinkPlayer(game, SnakeServer.PLAYER_CHARS[i % SnakeServer.PLAYER_CHARS.length], players);
+                sinks.add(player);
+                spawn(player);
+            }
+        }
+
+        void step() {
+            for (SinkPlayer player : sinks) {
+                if (player.isDead()) {
+                    spawn(player);
+                } else {
+                    player.steer();
+                }
+            }
+            game.step();
+        }
+
+        private void spawn(SinkPlayer player) {
+            players.add(player);
+            game.addNewPlayer(player);
+            Snake snake = player.getSnake();
+            if (snake == null) return;
+            for (int i = snake.getLength(); i < length; i++) {
+                snake.grow();
+            }
+        }
+    }
+
+    private static class SinkPlayer extends HeadlessPlayer {
+        private static final Snake.Direction[] TURN_ORDER = Snake.Direction.values();
+
+        private final Game game;
+
+        SinkPlayer(Game game, char playerChar, List<PlayerHandler> players) {
+            super(game, playerChar, players);
+            this.game = game;
+        }
+
+        @Override
+        public void sendFrame(Frame frame) {
+            sink += frame.length();
+        }
+
+        // Turn towards the first direction whose next cell is open
+        void steer() {
+            Snake snake = getSnake();
+            if (snake == null) return;
+            Board board = game.getBoard();
+            for (Snake.Direction direction : TURN_ORDER) {
+                int x = snake.getHeadX() + (direction == Snake.Direction.LEFT ? -1 : direction == Snake.Direction.RIGHT ? 1 : 0);
+                int y = snake.getHeadY() + (direction == Snake.Direction.UP ? -1 : direction == Snake.Direction.DOWN ? 1 : 0);
+                if (!board.isWall(x, y) && board.getOccupancy().isFree(x, y)) {
+                    snake.setDirection(direction);
+                    return;
+                }
+            }
+        }
+    }
+}
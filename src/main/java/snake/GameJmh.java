@@ -0,0 +1,53 @@
+package snake;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// GameBenchmark's Game.step and render cases under JMH, for its forked JVMs, warmup
+// checks and profilers. Run through Maven (see pom.xml):
+//
+//   mvn -B package exec:exec
+//   mvn -B package exec:exec -Djmh.args="GameJmh.step -p players=10,100 -prof gc"
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameJmh {
+    @Param({"1", "10", "50"})
+    public int players;
+
+    @Param({"20"})
+    public int length;
+
+    @Param({"1"})
+    public int level;
+
+    private GameBenchmark.HeadlessGame game;
+
+    @Setup
+    public void setUp() {
+        game = new GameBenchmark.HeadlessGame(level, players, length);
+    }
+
+    @Benchmark
+    public void step() {
+        game.step();
+    }
+
+    @Benchmark
+    public int render() {
+        return game.game.renderScreen().length();
+    }
+}
@@ -0,0 +1,141 @@
+package snake;
+
+import java.util.List;
+
+// What a room looked like at the end of one tick, for threads other than the game's.
+// The game thread builds a new one after every tick and publishes it with one volatile
+// write (Game.getState); readers (metrics, snapshots) just read whichever is current,
+// without the game lock and without ever seeing half a tick.
+//
+// Nothing here changes after construction, so a reader can keep one for as long as it
+// likes. The frame is the one the broadcast renders from (walls, fruit and snakes) and
+// the bodies are packed into one int[] of cells (y * width + x), so publishing costs a
+// handful of arrays per tick rather than an object per snake.
+public final class GameState {
+    private final long tick;
+    private final int level;
+    private final int tickPeriodMillis;
+    private final char[][] frame;
+    private final char[] bodyChars;
+    private final int[] scores;
+    private final long[] ownerTokens;
+    private final byte[] directions;
+    private final int[] growthPending;
+    private final int[] bodyStart; // Snake i's cells are bodies[bodyStart[i]] up to bodyStart[i + 1]
+    private final int[] bodies;
+
+    // frame must not be changed afterwards; snakes are read on the calling (game) thread
+    GameState(long tick, int level, int tickPeriodMillis, char[][] frame, List<Snake> snakes) {
+        this.tick = tick;
+        this.level = level;
+        this.tickPeriodMillis = tickPeriodMillis;
+        this.frame = frame;
+
+        int count = snakes.size();
+        this.bodyChars = new char[count];
+        this.scores = new int[count];
+        this.ownerTokens = new long[count];
+        this.directions = new byte[count];
+        this.growthPending = new int[count];
+        this.bodyStart = new int[count + 1];
+        int cells = 0;
+        for (int i = 0; i < count; i++) {
+            Snake snake = snakes.get(i);
+            bodyChars[i] = snake.getBodyChar();
+            scores[i] = snake.getScore();
+            ownerTokens[i] = snake.getOwnerToken();
+            directions[i] = (byte) snake.getDirection().ordinal();
+            growthPending[i] = snake.getGrowthPending();
+            bodyStart[i] = cells;
+            cells += snake.getLength();
+        }
+        bodyStart[count] = cells;
+
+        int width = getWidth();
+        this.bodies = new int[cells];
+        for (int i = 0; i < count; i++) {
+            Snake snake = snakes.get(i);
+            int start = bodyStart[i];
+            for (int s = 0; s < snake.getLength(); s++) {
+                bodies[start + s] = snake.getY(s) * width + snake.getX(s);
+            }
+        }
+    }
+
+    // Ticks run so far (0 before the first one)
+    public long getTick() {
+        return tick;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getTickPeriodMillis() {
+        return tickPeriodMillis;
+    }
+
+    public int getWidth() {
+        return frame[0].length;
+    }
+
+    public int getHeight() {
+        return frame.length;
+    }
+
+    // Board with every snake drawn on top (heads as 'O'); shared, do not modify
+    public char[][] getFrame() {
+        return frame;
+    }
+
+    // What is under the snakes: walls and fruit only. Cells a live snake covers are always
+    // floor on the board (fruit under a head is eaten, a head in a wall dies).
+    public char[][] copyBoardCells() {
+        char[][] cells = new char[frame.length][];
+        for (int y = 0; y < frame.length; y++) {
+            cells[y] = frame[y].clone();
+        }
+        int width = getWidth();
+        for (int cell : bodies) {
+            cells[cell / width][cell % width] = ' ';
+        }
+        return cells;
+    }
+
+    public int getSnakeCount() {
+        return bodyChars.length;
+    }
+
+    public char getBodyChar(int snake) {
+        return bodyChars[snake];
+    }
+
+    public boolean isBot(int snake) {
+        return bodyChars[snake] == BotPlayer.BOT_CHAR; // Never handed out to players
+    }
+
+    public int getScore(int snake) {
+        return scores[snake];
+    }
+
+    public long getOwnerToken(int snake) {
+        return ownerTokens[snake];
+    }
+
+    public Snake.Direction getDirection(int snake) {
+        return Snake.Direction.values()[directions[snake]];
+    }
+
+    public int getGrowthPending(int snake) {
+        return growthPending[snake];
+    }
+
+    public int getLength(int snake) {
+        return bodyStart[snake + 1] - bodyStart[snake];
+    }
+
+    // Segment's cell (y * width + x), head first
+    public int getCell(int snake, int segment) {
+        return bodies[bodyStart[snake] + segment];
+    }
+}
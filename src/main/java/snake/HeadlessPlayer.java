@@ -0,0 +1,33 @@
+package snake;
+
+import java.util.List;
+
+// A player with no connection, for the server's bots (BotPlayer) and the headless tools
+// (GameBenchmark, TickDeterminismCheck, Replayer). Frames go nowhere; when the game ends
+// the snake (or cannot place one), the player just leaves its list and waits for whoever
+// drives it to spawn it again.
+public class HeadlessPlayer extends PlayerHandler {
+    private final List<? extends PlayerHandler> list;
+
+    // list is the one to leave when closed (a room's players, its bots, a tool's own); may be null
+    public HeadlessPlayer(Game game, char playerChar, List<? extends PlayerHandler> list) {
+        super(game, playerChar, null);
+        this.list = list;
+    }
+
+    @Override
+    public void sendFrame(Frame frame) {
+    }
+
+    @Override
+    public void closeConnection() {
+        // Game removes the snake itself; just leave quietly
+        if (list != null) list.remove(this);
+        setSnake(null);
+    }
+
+    // No snake on the board: died, or there was no room to spawn one
+    public boolean isDead() {
+        return getSnake() == null;
+    }
+}
@@ -0,0 +1,132 @@
+package snake;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+// All-time best scores across every room and restart, kept in memory and saved to a small
+// binary file. Rooms offer a snake's score when it leaves the game; that only touches the
+// in-memory table (a handful of entries, best first). RoomManager writes the file from
+// its I/O thread every few seconds when something changed, and once more at shutdown.
+//
+// File format (numbers varints unless noted):
+//   "SNKH" <version u8> <count>, then per entry: <char u8> <score> <level> <epoch seconds i64>
+//
+// Tuning (system property):
+//   snake.highscores.size   entries kept (default 10)
+public class HighScores {
+    static final int SIZE = Math.max(1, Integer.getInteger("snake.highscores.size", 10));
+
+    private static final byte[] MAGIC = {'S', 'N', 'K', 'H'};
+    private static final int VERSION = 1;
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd")
+            .withZone(ZoneId.systemDefault());
+
+    private final Path file;
+    private final char[] chars = new char[SIZE];
+    private final int[] scores = new int[SIZE];
+    private final int[] levels = new int[SIZE];
+    private final long[] times = new long[SIZE];
+    private int count = 0;
+    private boolean dirty = false;
+
+    private HighScores(Path file) {
+        this.file = file;
+    }
+
+    // The table saved in the file, or an empty one if the file does not exist yet
+    public static HighScores load(Path file) throws IOException {
+        HighScores table = new HighScores(file);
+        if (!Files.exists(file)) return table;
+        byte[] data = Files.readAllBytes(file);
+        BinaryProtocol.Reader in = new BinaryProtocol.Reader(data, 0, data.length);
+        for (byte b : MAGIC) {
+            if (in.readByte() != (b & 0xFF)) throw new IOException("Not a high score file: " + file);
+        }
+        int version = in.readByte();
+        if (version != VERSION) throw new IOException("Unsupported high score version " + version);
+        int count = in.readVarint();
+        for (int i = 0; i < count; i++) {
+            table.insert((char) in.readByte(), in.readVarint(), in.readVarint(), in.readLong());
+        }
+        return table;
+    }
+
+    // Enters the score if it beats the lowest one kept (or the table has room); true if
+    // it did. Cheap when it does not: one comparison.
+    public synchronized boolean offer(char playerChar, int score, int level) {
+        if (score <= 0 || (count == SIZE && score <= scores[SIZE - 1])) return false;
+        insert(playerChar, score, level, Instant.now().getEpochSecond());
+        dirty = true;
+        return true;
+    }
+
+    // Keeps the arrays sorted best first; equal scores keep the earlier entry ahead
+    private void insert(char playerChar, int score, int level, long time) {
+        int at = count;
+        while (at > 0 && scores[at - 1] < score) {
+            at--;
+        }
+        if (at == SIZE) return;
+        int moved = Math.min(count, SIZE - 1) - at;
+        System.arraycopy(chars, at, chars, at + 1, moved);
+        System.arraycopy(scores, at, scores, at + 1, moved);
+        System.arraycopy(levels, at, levels, at + 1, moved);
+        System.arraycopy(times, at, times, at + 1, moved);
+        chars[at] = playerChar;
+        scores[at] = score;
+        levels[at] = level;
+        times[at] = time;
+        count = Math.min(count + 1, SIZE);
+    }
+
+    // One line per entry, for the "highscores" command
+    public synchronized List<String> lines() {
+        List<String> lines = new ArrayList<>(count + 1);
+        lines.add("--- All-time High Scores ---");
+        for (int i = 0; i < count; i++) {
+            lines.add((i + 1) + ". Player '" + chars[i] + "': " + scores[i] + " (level " + levels[i] + ", "
+                    + DATE.format(Instant.ofEpochSecond(times[i])) + ")");
+        }
+        if (count == 0) lines.add("(none yet)");
+        return lines;
+    }
+
+    // Writes the table if it changed since the last write: encoded under the lock, then
+    // written to a temporary file and moved over the old one outside it
+    public void flush() {
+        byte[] data;
+        synchronized (this) {
+            if (!dirty) return;
+            dirty = false;
+            BinaryProtocol.Writer out = new BinaryProtocol.Writer();
+            out.writeBytes(MAGIC);
+            out.writeByte(VERSION);
+            out.writeVarint(count);
+            for (int i = 0; i < count; i++) {
+                out.writeByte(chars[i]);
+                out.writeVarint(scores[i]);
+                out.writeVarint(levels[i]);
+                out.writeLong(times[i]);
+            }
+            data = out.toByteArray();
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (file.getParent() != null) Files.createDirectories(file.getParent());
+            Files.write(temp, data);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            synchronized (this) {
+                dirty = true; // Try again next time
+            }
+            System.out.println("Cannot save high scores: " + e.getMessage());
+        }
+    }
+}
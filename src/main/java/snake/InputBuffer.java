@@ -0,0 +1,87 @@
+package snake;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Turns sent by one player, waiting for the game thread. The connection's reader is
+// the only producer and the game tick the only consumer, so a small ring with two
+// volatile counters is enough: no locks, no allocation per input.
+//
+// The tick takes at most one turn per snake, so "w" then "d" typed quickly turn up on
+// one tick and right on the next instead of the second press overwriting the first.
+// A turn equal to the last one queued is coalesced into it. Commands beyond the rate
+// limit, and turns that do not fit in the buffer, are dropped and counted.
+//
+// Tuning (system properties):
+//   snake.input.capacity   turns buffered per player, a power of two (default 4)
+//   snake.input.rate       commands per second a connection may send (default 20,
+//                          with bursts of as many)
+public class InputBuffer {
+    static final int CAPACITY = Integer.highestOneBit(Math.max(1, Integer.getInteger("snake.input.capacity", 4)));
+    static final int RATE = Math.max(1, Integer.getInteger("snake.input.rate", 20));
+    private static final long NANOS_PER_TOKEN = 1_000_000_000L / RATE;
+
+    // Server-wide count of dropped inputs, for the stats log
+    private static final LongAdder DROPPED_ALL = new LongAdder();
+
+    private final Snake.Direction[] slots = new Snake.Direction[CAPACITY];
+    private volatile long head = 0; // Next slot to take (consumer)
+    private volatile long tail = 0; // Next slot to fill (producer)
+
+    // Token bucket (producer only)
+    private long tokens = RATE;
+    private long lastRefill = System.nanoTime();
+
+    private volatile long dropped = 0;
+
+    // Rate limit for any command from this connection; false means ignore it
+    public boolean allowCommand() {
+        long now = System.nanoTime();
+        long refill = (now - lastRefill) / NANOS_PER_TOKEN;
+        if (refill > 0) {
+            tokens = Math.min(RATE, tokens + refill);
+            lastRefill += refill * NANOS_PER_TOKEN;
+        }
+        if (tokens == 0) {
+            countDropped();
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    // Producer side: queues a turn for a later tick
+    public void offer(Snake.Direction direction) {
+        long t = tail;
+        if (t > head && slots[(int) ((t - 1) & (CAPACITY - 1))] == direction) {
+            return; // Same as the turn already waiting
+        }
+        if (t - head >= CAPACITY) {
+            countDropped();
+            return;
+        }
+        slots[(int) (t & (CAPACITY - 1))] = direction;
+        tail = t + 1; // Publishes the slot
+    }
+
+    // Consumer side: the oldest queued turn, or null
+    public Snake.Direction poll() {
+        long h = head;
+        if (h == tail) return null;
+        Snake.Direction direction = slots[(int) (h & (CAPACITY - 1))];
+        head = h + 1;
+        return direction;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    public static long getDroppedAll() {
+        return DROPPED_ALL.sum();
+    }
+
+    private void countDropped() {
+        dropped++;
+        DROPPED_ALL.increment();
+    }
+}
@@ -0,0 +1,66 @@
+package snake;
+
+import java.util.Iterator;
+import java.util.TreeSet;
+
+// A room's snakes ordered by score, plus the sum of their scores, kept up to date as
+// snakes join, leave and score instead of being sorted and summed every tick. A score
+// change is a remove and an insert (O(log n)); the top few are the first entries of the
+// tree, so reading them does not depend on how many snakes there are.
+//
+// Ties go to the older snake (lower id). Only used by the game thread, under the lock.
+public class Leaderboard {
+    private final TreeSet<Snake> ranking = new TreeSet<>((a, b) -> a.getScore() != b.getScore()
+            ? Integer.compare(b.getScore(), a.getScore())
+            : Integer.compare(a.getId(), b.getId()));
+    private int totalScore = 0;
+    // Bumped on every change, so the footer is only rebuilt when it would differ
+    private int version = 0;
+
+    public void add(Snake snake) {
+        if (ranking.add(snake)) {
+            totalScore += snake.getScore();
+            version++;
+        }
+    }
+
+    public void remove(Snake snake) {
+        if (ranking.remove(snake)) {
+            totalScore -= snake.getScore();
+            version++;
+        }
+    }
+
+    // The only way a ranked snake's score may change: the tree is ordered by it
+    public void addScore(Snake snake, int amount) {
+        if (amount == 0) return;
+        boolean ranked = ranking.remove(snake);
+        snake.addScore(amount);
+        if (ranked) {
+            ranking.add(snake);
+            totalScore += amount;
+            version++;
+        }
+    }
+
+    public int getTotalScore() {
+        return totalScore;
+    }
+
+    public int size() {
+        return ranking.size();
+    }
+
+    // Highest score first; read only as far as needed
+    public Iterator<Snake> iterator() {
+        return ranking.iterator();
+    }
+
+    public Snake getLeader() {
+        return ranking.isEmpty() ? null : ranking.first();
+    }
+
+    public int getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,139 @@
+package snake;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A map checked and compiled once, then shared by every Board that plays it: the walls
+// as rows to copy and as a bitset, and the spawn cells of the empty map (see
+// Board.isSafeSpawn). A new Board for a level copies these instead of parsing the map
+// and scanning it for spawns again, so a level up costs a few array copies.
+//
+// Nothing here changes after compile(); Boards only ever get copies of the mutable parts.
+//
+// Map files are plain text, one row per line: '#' is a wall, ' ' is floor, and lines
+// starting with ';' are comments. Every row must be as long as the first and the border
+// must be all wall.
+public final class Level {
+    static final String MAP_SUFFIX = ".map";
+    private static final int MIN_WIDTH = 5; // Room for one spawn: [body-2, body-1, head, first-move]
+    private static final int MIN_HEIGHT = 3;
+
+    private final String name;
+    private final int width;
+    private final int height;
+    private final char[][] rows;
+    private final long[] walls;
+    private final CellSet spawnCells;
+
+    private Level(String name, char[][] rows, long[] walls, CellSet spawnCells) {
+        this.name = name;
+        this.width = rows[0].length;
+        this.height = rows.length;
+        this.rows = rows;
+        this.walls = walls;
+        this.spawnCells = spawnCells;
+    }
+
+    // Checks the map and precomputes what a Board needs; the message names the bad row
+    public static Level compile(String name, String[] map) throws IOException {
+        if (map.length < MIN_HEIGHT) {
+            throw new IOException(name + ": needs at least " + MIN_HEIGHT + " rows");
+        }
+        int width = map[0].length();
+        if (width < MIN_WIDTH) {
+            throw new IOException(name + ": rows need at least " + MIN_WIDTH + " cells");
+        }
+        char[][] rows = new char[map.length][];
+        for (int y = 0; y < map.length; y++) {
+            String row = map[y];
+            if (row.length() != width) {
+                throw new IOException(name + " row " + (y + 1) + ": " + row.length() + " cells, expected " + width);
+            }
+            for (int x = 0; x < width; x++) {
+                char c = row.charAt(x);
+                if (c != '#' && c != ' ') {
+                    throw new IOException(name + " row " + (y + 1) + ": unexpected '" + c + "' at column " + (x + 1));
+                }
+                boolean border = y == 0 || y == map.length - 1 || x == 0 || x == width - 1;
+                if (border && c != '#') {
+                    throw new IOException(name + " row " + (y + 1) + ": gap in the border at column " + (x + 1));
+                }
+            }
+            rows[y] = row.toCharArray();
+        }
+
+        // Same rules as a Board restored from a snapshot, without building one: the
+        // built-in levels are compiled while Board's static fields are initialized
+        CellSet spawnCells = Board.findSpawnCells(rows);
+        if (spawnCells.size() == 0) {
+            throw new IOException(name + ": no room to spawn a snake (4 open cells in a row)");
+        }
+        return new Level(name, rows, Board.findWalls(rows), spawnCells);
+    }
+
+    // Reads one map file (see the format above)
+    public static Level load(Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.startsWith(";")) continue;
+            lines.add(line);
+        }
+        return compile(file.getFileName().toString(), lines.toArray(new String[0]));
+    }
+
+    // Every *.map file in the directory, in file name order (level-01.map, level-02.map...)
+    public static List<Level> loadAll(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir, "*" + MAP_SUFFIX)) {
+            for (Path file : entries) {
+                files.add(file);
+            }
+        }
+        if (files.isEmpty()) {
+            throw new IOException("No " + MAP_SUFFIX + " files in " + dir);
+        }
+        files.sort(null);
+        List<Level> levels = new ArrayList<>(files.size());
+        for (Path file : files) {
+            levels.add(load(file));
+        }
+        return levels;
+    }
+
+    // A fresh grid for one Board to own
+    char[][] copyRows() {
+        char[][] grid = new char[height][];
+        for (int y = 0; y < height; y++) {
+            grid[y] = Arrays.copyOf(rows[y], width);
+        }
+        return grid;
+    }
+
+    // Shared, read-only: walls never change during a game
+    long[] getWalls() {
+        return walls;
+    }
+
+    // A fresh set for one Board to keep up to date as fruit and snakes come and go
+    CellSet copySpawnCells() {
+        return new CellSet(spawnCells);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,429 @@
+package snake;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+// Headless load test against a running SnakeServer. Opens many connections (one virtual
+// thread each), plays every snake with a simple bot over the delta text protocol, and
+// reports what the players would have seen: frame inter-arrival times, bytes received,
+// deaths and connections the server dropped. Dead bots reconnect, so the load stays
+// constant for the whole run.
+//
+//   java snake.SnakeServer 8189
+//   java snake.LoadGenerator bots=2000 seconds=60
+//   java snake.LoadGenerator host=10.0.0.5 port=8189 bots=500 strategy=fruit rate=100
+//
+// Bots: "random" wanders and turns now and then, "walls" goes straight until something
+// is in front of it, "fruit" heads for the nearest fruit in its window; "mix" (default)
+// spreads the bots over the three. A bot sends at most one turn per frame.
+public class LoadGenerator {
+    private static final String[] STRATEGIES = {"random", "walls", "fruit"};
+    private static final int[] DX = {0, 0, -1, 1}; // w, s, a, d
+    private static final int[] DY = {-1, 1, 0, 0};
+    private static final String[] KEYS = {"w", "s", "a", "d"};
+    private static final int MAX_INTERVAL_MILLIS = 5000;
+    private static final long REPORT_NANOS = 5_000_000_000L;
+
+    private static final LongAdder CONNECTS = new LongAdder();
+    private static final LongAdder CONNECT_FAILURES = new LongAdder();
+    private static final LongAdder DEATHS = new LongAdder();
+    private static final LongAdder SERVER_CLOSED = new LongAdder();
+    private static final LongAdder BYTES = new LongAdder();
+    private static final LongAdder FRAMES = new LongAdder();
+    private static final LongAdder TURNS = new LongAdder();
+    // Frame inter-arrival times, one bucket per millisecond (the last one is "or more")
+    private static final LongAdder[] INTERVALS = new LongAdder[MAX_INTERVAL_MILLIS + 1];
+
+    private static final Set<Socket> OPEN = ConcurrentHashMap.newKeySet();
+    private static volatile boolean stopping = false;
+    private static volatile String lastConnectError = null;
+
+    public static void main(String[] args) throws InterruptedException {
+        String host = "127.0.0.1";
+        int port = 8189;
+        int bots = 100;
+        int seconds = 30;
+        int rate = 500;
+        String strategy = "mix";
+        for (String arg : args) {
+            String[] parts = arg.split("=", 2);
+            if (parts.length != 2) {
+                System.err.println("Usage: java snake.LoadGenerator [host=127.0.0.1] [port=8189] [bots=100] [seconds=30]"
+                        + " [rate=500] [strategy=mix|random|walls|fruit]");
+                return;
+            }
+            switch (parts[0]) {
+                case "host": host = parts[1]; break;
+                case "port": port = Integer.parseInt(parts[1]); break;
+                case "bots": bots = Integer.parseInt(parts[1]); break;
+                case "seconds": seconds = Integer.parseInt(parts[1]); break;
+                case "rate": rate = Integer.parseInt(parts[1]); break; // New connections per second
+                case "strategy": strategy = parts[1]; break;
+                default:
+                    System.err.println("Unknown parameter: " + parts[0]);
+                    return;
+            }
+        }
+        if (!strategy.equals("mix") && !Arrays.asList(STRATEGIES).contains(strategy)) {
+            System.err.println("Unknown strategy: " + strategy);
+            return;
+        }
+        for (int i = 0; i < INTERVALS.length; i++) {
+            INTERVALS[i] = new LongAdder();
+        }
+
+        System.out.printf("%d %s bots against %s:%d for %d s%n", bots, strategy, host, port, seconds);
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(bots);
+        long nextReport = start + REPORT_NANOS;
+        for (int i = 0; i < bots && System.nanoTime() < end; i++) {
+            String botStrategy = strategy.equals("mix") ? STRATEGIES[i % STRATEGIES.length] : strategy;
+            Bot bot = new Bot(host, port, botStrategy, new Random(i));
+            Thread.ofVirtual().name("bot-" + i).start(() -> {
+                try {
+                    bot.run();
+                } finally {
+                    done.countDown();
+                }
+            });
+            // Ramp up at the given rate so the accept loop is not the only thing measured
+            long due = start + (i + 1) * 1_000_000_000L / rate;
+            long wait = due - System.nanoTime();
+            if (wait > 0) Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            if (System.nanoTime() >= nextReport) {
+                report(start);
+                nextReport += REPORT_NANOS;
+            }
+        }
+        while (System.nanoTime() < end) {
+            Thread.sleep(Math.max(1, Math.min(nextReport, end) - System.nanoTime()) / 1_000_000 + 1);
+            if (System.nanoTime() >= nextReport && System.nanoTime() < end) {
+                report(start);
+                nextReport += REPORT_NANOS;
+            }
+        }
+
+        stopping = true;
+        for (Socket socket : OPEN) {
+            try {
+                socket.close(); // Unblocks the bot's read
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+        done.await();
+        summary(start, bots);
+    }
+
+    private static void report(long start) {
+        System.out.printf("%5.0f s  connected %d  frames %d  received %.1f MB  deaths %d  dropped by server %d%n",
+                (System.nanoTime() - start) / 1e9, OPEN.size(), FRAMES.sum(), BYTES.sum() / 1e6,
+                DEATHS.sum(), SERVER_CLOSED.sum());
+    }
+
+    private static void summary(long start, int bots) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double minutes = seconds / 60;
+        System.out.println();
+        System.out.printf("connections   %d opened, %d failed%s%n", CONNECTS.sum(), CONNECT_FAILURES.sum(),
+                lastConnectError == null ? "" : " (last: " + lastConnectError + ")");
+        System.out.printf("disconnects   %d deaths (%.1f/min), %d dropped by server (%.1f/min)%n",
+                DEATHS.sum(), DEATHS.sum() / minutes, SERVER_CLOSED.sum(), SERVER_CLOSED.sum() / minutes);
+        System.out.printf("received      %.1f MB, %.1f KB/s per bot%n",
+                BYTES.sum() / 1e6, BYTES.sum() / 1e3 / seconds / bots);
+        System.out.printf("frames        %d (%.0f/s), turns sent %d%n", FRAMES.sum(), FRAMES.sum() / seconds, TURNS.sum());
+        System.out.printf("interval ms   p50 %d  p90 %d  p99 %d  p99.9 %d  max %s%n",
+                intervalPercentile(50), intervalPercentile(90), intervalPercentile(99),
+                intervalPercentile(99.9), maxInterval());
+    }
+
+    // Frame inter-arrival percentile in milliseconds (p in 0..100)
+    private static int intervalPercentile(double p) {
+        long total = 0;
+        for (LongAdder bucket : INTERVALS) total += bucket.sum();
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(p / 100.0 * total);
+        long seen = 0;
+        for (int ms = 0; ms < INTERVALS.length; ms++) {
+            seen += INTERVALS[ms].sum();
+            if (seen >= rank) return ms;
+        }
+        return MAX_INTERVAL_MILLIS;
+    }
+
+    private static String maxInterval() {
+        for (int ms = INTERVALS.length - 1; ms >= 0; ms--) {
+            if (INTERVALS[ms].sum() > 0) return ms == MAX_INTERVAL_MILLIS ? ">=" + ms : String.valueOf(ms);
+        }
+        return "0";
+    }
+
+    // One simulated player; reconnects after each death until the run is over
+    private static final class Bot {
+        private final String host;
+        private final int port;
+        private final String strategy;
+        private final Random random;
+
+        private char me;
+        private char[][] grid;     // Last window received, window coordinates
+        private int originX;       // Window position on the board
+        private int originY;
+        private int headX;         // Board coordinates, -1 until the first move is seen
+        private int headY;
+        private int heading;       // Index into DX/DY
+        private int pendingTurn;   // Sent but not applied yet, -1 if none
+        private int pendingFrames; // Frames since pendingTurn was sent
+        private long lastFrame;
+
+        Bot(String host, int port, String strategy, Random random) {
+            this.host = host;
+            this.port = port;
+            this.strategy = strategy;
+            this.random = random;
+        }
+
+        void run() {
+            while (!stopping) {
+                if (!playOnce()) {
+                    return;
+                }
+            }
+        }
+
+        // One connection; false if the bot should not try again
+        private boolean playOnce() {
+            Socket socket;
+            try {
+                socket = new Socket(host, port);
+            } catch (IOException e) {
+                CONNECT_FAILURES.increment();
+                lastConnectError = e.toString();
+                return false; // The server is full or gone: stop rather than hammer it
+            }
+            CONNECTS.increment();
+            OPEN.add(socket);
+            if (stopping) {
+                // Connected while main() was closing everything: it missed this one
+                OPEN.remove(socket);
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Closing anyway
+                }
+                return false;
+            }
+            me = 0;
+            grid = null;
+            headX = -1;
+            heading = 3; // New snakes start moving right
+            pendingTurn = -1;
+            lastFrame = 0;
+            try (socket) {
+                OutputStream out = socket.getOutputStream();
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                        new CountingInputStream(socket.getInputStream()), StandardCharsets.UTF_8));
+                out.write("delta\n".getBytes(StandardCharsets.UTF_8));
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.equals("GAME OVER")) {
+                        DEATHS.increment();
+                        return true;
+                    }
+                    if (line.startsWith("@K ")) {
+                        readKeyframe(line, in);
+                        frameArrived();
+                        steer(out);
+                    } else if (line.startsWith("@D;")) {
+                        applyDelta(line);
+                        frameArrived();
+                        steer(out);
+                    } else if (line.startsWith("You are player ")) {
+                        me = line.charAt(line.length() - 1);
+                    }
+                }
+                if (!stopping) SERVER_CLOSED.increment();
+                return true;
+            } catch (IOException e) {
+                if (!stopping) SERVER_CLOSED.increment();
+                return true;
+            } finally {
+                OPEN.remove(socket);
+            }
+        }
+
+        private void readKeyframe(String header, BufferedReader in) throws IOException {
+            String[] fields = header.split(" ");
+            int width = Integer.parseInt(fields[2]);
+            int height = Integer.parseInt(fields[3]);
+            originX = Integer.parseInt(fields[4]);
+            originY = Integer.parseInt(fields[5]);
+            grid = new char[height][];
+            for (int y = 0; y < height; y++) {
+                String row = in.readLine();
+                if (row == null) throw new IOException("Connection closed during keyframe");
+                grid[y] = Arrays.copyOf(row.toCharArray(), width);
+            }
+            // The window moved with the head, so this frame carries the move instead of a delta
+            if (headX >= 0 && me != 0) {
+                int x = headX + DX[heading] - originX;
+                int y = headY + DY[heading] - originY;
+                if (y >= 0 && y < height && x >= 0 && x < width && grid[y][x] == 'O') {
+                    headX += DX[heading];
+                    headY += DY[heading];
+                }
+            }
+        }
+
+        // Heads are drawn as 'O' for everyone, so the cell that turned into our character is
+        // where our head was; the head is the 'O' next to it
+        private void applyDelta(String line) {
+            if (grid == null) return;
+            int neckX = -1;
+            int neckY = -1;
+            int position = 3;
+            while (position < line.length()) {
+                int firstComma = line.indexOf(',', position);
+                int secondComma = line.indexOf(',', firstComma + 1);
+                int x = Integer.parseInt(line, position, firstComma, 10);
+                int y = Integer.parseInt(line, firstComma + 1, secondComma, 10);
+                char cell = line.charAt(secondComma + 1);
+                position = secondComma + 3; // Past the cell and the ';'
+                if (y < 0 || y >= grid.length || x < 0 || x >= grid[y].length) continue;
+                grid[y][x] = cell;
+                if (cell == me && me != 0) {
+                    neckX = x;
+                    neckY = y;
+                }
+            }
+            if (neckX < 0) return;
+            // Most likely first: the turn we asked for, then straight on
+            int[] order = {pendingTurn >= 0 ? pendingTurn : heading, heading, 0, 1, 2, 3};
+            for (int d : order) {
+                int x = neckX + DX[d];
+                int y = neckY + DY[d];
+                if (y >= 0 && y < grid.length && x >= 0 && x < grid[y].length && grid[y][x] == 'O') {
+                    headX = originX + x;
+                    headY = originY + y;
+                    heading = d;
+                    if (heading == pendingTurn) pendingTurn = -1;
+                    return;
+                }
+            }
+        }
+
+        private void frameArrived() {
+            long now = System.nanoTime();
+            FRAMES.increment();
+            if (lastFrame != 0) {
+                INTERVALS[(int) Math.min(MAX_INTERVAL_MILLIS, (now - lastFrame) / 1_000_000)].increment();
+            }
+            lastFrame = now;
+        }
+
+        private void steer(OutputStream out) throws IOException {
+            if (pendingTurn >= 0 && ++pendingFrames > 3) pendingTurn = -1; // Lost or refused
+            if (headX < 0 || pendingTurn >= 0) return;
+            int turn;
+            switch (strategy) {
+                case "random":
+                    turn = random.nextInt(10) == 0 || !isFree(heading) ? randomFree() : heading;
+                    break;
+                case "fruit":
+                    turn = towardsFruit();
+                    break;
+                default:
+                    turn = isFree(heading) ? heading : randomFree();
+            }
+            if (turn < 0 || turn == heading) return;
+            pendingTurn = turn;
+            pendingFrames = 0;
+            TURNS.increment();
+            out.write((KEYS[turn] + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        // The free direction that gets closest to the nearest fruit in the window
+        private int towardsFruit() {
+            int fruitX = -1;
+            int fruitY = -1;
+            int best = Integer.MAX_VALUE;
+            for (int y = 0; y < grid.length; y++) {
+                for (int x = 0; x < grid[y].length; x++) {
+                    char cell = grid[y][x];
+                    if (cell >= '1' && cell <= '9') {
+                        int distance = Math.abs(originX + x - headX) + Math.abs(originY + y - headY);
+                        if (distance < best) {
+                            best = distance;
+                            fruitX = originX + x;
+                            fruitY = originY + y;
+                        }
+                    }
+                }
+            }
+            if (fruitX < 0) return isFree(heading) ? heading : randomFree();
+            int choice = -1;
+            for (int d = 0; d < 4; d++) {
+                if (!isFree(d)) continue;
+                int distance = Math.abs(headX + DX[d] - fruitX) + Math.abs(headY + DY[d] - fruitY);
+                if (distance < best) {
+                    best = distance;
+                    choice = d;
+                }
+            }
+            if (choice >= 0) return choice;
+            return isFree(heading) ? heading : randomFree();
+        }
+
+        private int randomFree() {
+            int first = random.nextInt(4);
+            for (int i = 0; i < 4; i++) {
+                int d = (first + i) % 4;
+                if (isFree(d)) return d;
+            }
+            return -1; // Boxed in
+        }
+
+        // Empty or fruit, and not straight back into our own neck
+        private boolean isFree(int direction) {
+            if (DX[direction] == -DX[heading] && DY[direction] == -DY[heading]) return false;
+            int x = headX + DX[direction] - originX;
+            int y = headY + DY[direction] - originY;
+            if (y < 0 || y >= grid.length || x < 0 || x >= grid[y].length) return false;
+            char cell = grid[y][x];
+            return cell == ' ' || (cell >= '1' && cell <= '9');
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) BYTES.increment();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) BYTES.add(read);
+            return read;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package snake;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+// Server-wide counters in Prometheus text format. The hot paths (ticks, broadcasts,
+// sends) only bump LongAdders, which do not contend between room threads; everything
+// else (players, queues, GC) is gathered when someone asks, on the asking thread.
+//
+//   curl http://127.0.0.1:9189/metrics
+//
+// Tuning (system properties):
+//   snake.metrics.port   serve /metrics on this port, loopback only (default: off)
+//   snake.metrics.log    "true" also prints the metrics with the periodic stats log
+public final class Metrics {
+    static final int PORT = Integer.getInteger("snake.metrics.port", 0);
+    static final boolean LOG = Boolean.getBoolean("snake.metrics.log");
+
+    // Upper bounds of the duration histograms, in seconds
+    private static final double[] BUCKETS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5};
+
+    private static final Histogram TICK = new Histogram();
+    private static final Histogram BROADCAST = new Histogram();
+    static final LongAdder BYTES_QUEUED = new LongAdder();
+    static final LongAdder FRAMES_QUEUED = new LongAdder();
+    static final LongAdder FRAMES_DROPPED = new LongAdder();
+    static final LongAdder FRUIT_EATEN = new LongAdder();
+    static final LongAdder WALL_COLLISIONS = new LongAdder();
+    static final LongAdder SELF_COLLISIONS = new LongAdder();
+    static final LongAdder OTHER_COLLISIONS = new LongAdder();
+
+    private Metrics() {
+    }
+
+    // One room's step: the tick, then its broadcast
+    static void recordStep(long tickNanos, long broadcastNanos) {
+        TICK.record(tickNanos);
+        BROADCAST.record(broadcastNanos);
+    }
+
+    // Serves /metrics on snake.metrics.port, if set
+    public static void start(RoomManager rooms) throws IOException {
+        if (PORT == 0) return;
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), PORT), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = render(rooms).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start(); // Default executor: one thread, scrapes are rare
+        System.out.println("Metrics on http://127.0.0.1:" + PORT + "/metrics");
+    }
+
+    public static String render(RoomManager rooms) {
+        StringBuilder out = new StringBuilder(4096);
+        TICK.write(out, "snake_tick_duration_seconds", "Time spent in Game.tick");
+        BROADCAST.write(out, "snake_broadcast_duration_seconds", "Time spent rendering and queueing a tick's frames");
+        counter(out, "snake_sent_bytes_total", "Bytes queued to connections", BYTES_QUEUED.sum());
+        counter(out, "snake_sent_frames_total", "Frames queued to connections", FRAMES_QUEUED.sum());
+        counter(out, "snake_dropped_frames_total", "Frames lost to full outbound queues", FRAMES_DROPPED.sum());
+        counter(out, "snake_dropped_inputs_total", "Commands dropped by the rate limit or a full input buffer",
+                InputBuffer.getDroppedAll());
+        counter(out, "snake_fruit_eaten_total", "Fruit eaten", FRUIT_EATEN.sum());
+        header(out, "snake_collisions_total", "counter", "Snakes killed, by what they hit");
+        sample(out, "snake_collisions_total{type=\"wall\"}", WALL_COLLISIONS.sum());
+        sample(out, "snake_collisions_total{type=\"self\"}", SELF_COLLISIONS.sum());
+        sample(out, "snake_collisions_total{type=\"other\"}", OTHER_COLLISIONS.sum());
+
+        long players = 0;
+        long spectators = 0;
+        long snakes = 0;
+        long queued = 0;
+        long maxQueued = 0;
+        int roomCount = 0;
+        for (Game room : rooms.getRooms()) {
+            roomCount++;
+            players += room.getPlayers().size();
+            spectators += room.getSpectators().size();
+            snakes += room.getSnakeCount();
+            for (PlayerHandler player : room.getPlayers()) {
+                int depth = player.getOutboundDepth();
+                queued += depth;
+                maxQueued = Math.max(maxQueued, depth);
+            }
+            for (PlayerHandler spectator : room.getSpectators()) {
+                int depth = spectator.getOutboundDepth();
+                queued += depth;
+                maxQueued = Math.max(maxQueued, depth);
+            }
+        }
+        gauge(out, "snake_rooms", "Open rooms", roomCount);
+        gauge(out, "snake_players", "Connected players", players);
+        gauge(out, "snake_spectators", "Connected spectators", spectators);
+        gauge(out, "snake_snakes", "Snakes on the boards, parked ones included", snakes);
+        gauge(out, "snake_outbound_queued_frames", "Frames waiting in all outbound queues", queued);
+        gauge(out, "snake_outbound_queued_frames_max", "Longest outbound queue", maxQueued);
+
+        header(out, "jvm_gc_collections_total", "counter", "Garbage collections, by collector");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sample(out, "jvm_gc_collections_total{gc=\"" + gc.getName() + "\"}", gc.getCollectionCount());
+        }
+        header(out, "jvm_gc_collection_seconds_total", "counter", "Time spent in garbage collection, by collector");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sample(out, "jvm_gc_collection_seconds_total{gc=\"" + gc.getName() + "\"}", gc.getCollectionTime() / 1e3);
+        }
+        gauge(out, "jvm_memory_heap_used_bytes", "Heap in use",
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemoryEnabled()) {
+            // Allocation rate is rate() of this
+            counter(out, "jvm_allocated_bytes_total", "Bytes allocated by all threads",
+                    threads.getTotalThreadAllocatedBytes());
+        }
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, "counter", help);
+        sample(out, name, value);
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        header(out, name, "gauge", help);
+        sample(out, name, value);
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, long value) {
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, double value) {
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    // Fixed-bucket histogram; recording is one LongAdder increment and one add
+    private static final class Histogram {
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1]; // Last one is +Inf
+        private final LongAdder sumNanos = new LongAdder();
+        private final long[] boundsNanos = new long[BUCKETS.length];
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+            for (int i = 0; i < BUCKETS.length; i++) {
+                boundsNanos[i] = (long) (BUCKETS[i] * 1e9);
+            }
+        }
+
+        void record(long nanos) {
+            int i = 0;
+            while (i < boundsNanos.length && nanos > boundsNanos[i]) {
+                i++;
+            }
+            buckets[i].increment();
+            sumNanos.add(nanos);
+        }
+
+        // Prometheus buckets are cumulative
+        void write(StringBuilder out, String name, String help) {
+            header(out, name, "histogram", help);
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative += buckets[i].sum();
+                sample(out, name + "_bucket{le=\"" + BUCKETS[i] + "\"}", cumulative);
+            }
+            cumulative += buckets[BUCKETS.length].sum();
+            sample(out, name + "_bucket{le=\"+Inf\"}", cumulative);
+            sample(out, name + "_sum", sumNanos.sum() / 1e9);
+            sample(out, name + "_count", cumulative);
+        }
+    }
+}
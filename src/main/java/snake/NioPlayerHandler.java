@@ -0,0 +1,182 @@
+package snake;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+
+// A player connection driven by NioServer's selector instead of its own thread.
+// Speaks the same protocols as PlayerHandler: text lines, or BinaryProtocol when the
+// client opens with its handshake.
+public class NioPlayerHandler extends PlayerHandler {
+    private static final int MAX_LINE_LENGTH = 256;
+    private static final int MAX_GATHER = 16;
+    private static final int UNKNOWN = 0;
+    private static final int TEXT = 1;
+    private static final int HANDSHAKE = 2; // Binary, handshake not complete yet
+    private static final int BINARY = 3;
+
+    private final SocketChannel channel;
+    private final NioServer server;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(MAX_LINE_LENGTH);
+    // Frames taken from the outbound queue but not fully written yet (selector thread only)
+    private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>(MAX_GATHER);
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private boolean closeRequested = false;
+    private int protocol = UNKNOWN; // Selector thread only
+    private SelectionKey key;
+
+    public NioPlayerHandler(SocketChannel channel, NioServer server, Game game, char playerChar, List<PlayerHandler> players) {
+        super(game, playerChar, players);
+        this.channel = channel;
+        this.server = server;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    @Override
+    public void run() {
+        // Nothing to do: reads and writes happen on the selector thread
+    }
+
+    @Override
+    protected void onFrameQueued() {
+        server.requestWrite(this);
+    }
+
+    @Override
+    protected void closeTransport() {
+        // Flush what is queued first; onWritable closes the channel when it reaches the marker
+        outbound.offerClose();
+        server.requestWrite(this);
+    }
+
+    @Override
+    protected void abortTransport() {
+        try {
+            channel.close(); // Also cancels the selection key
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Called on the selector thread when the channel has data to read
+    void onReadable() throws IOException {
+        int read = channel.read(readBuffer);
+        if (read == -1) {
+            closeConnection();
+            abortTransport();
+            return;
+        }
+
+        readBuffer.flip();
+        if (protocol == UNKNOWN && readBuffer.hasRemaining()) {
+            // The first byte tells a binary client from a text one (see BinaryProtocol)
+            protocol = readBuffer.get(readBuffer.position()) == BinaryProtocol.MAGIC ? HANDSHAKE : TEXT;
+        }
+        int consumed = protocol == TEXT ? consumeLines() : consumeBinary();
+        if (consumed < 0) return; // Connection closed
+        readBuffer.position(consumed);
+        readBuffer.compact();
+
+        // A line longer than any valid command: drop it rather than stall the connection
+        if (!readBuffer.hasRemaining()) {
+            readBuffer.clear();
+        }
+    }
+
+    // Handles every complete line; returns where the unread bytes start, or -1 if closed
+    private int consumeLines() {
+        int lineStart = readBuffer.position();
+        for (int i = lineStart; i < readBuffer.limit(); i++) {
+            if (readBuffer.get(i) == '\n') {
+                String line = new String(readBuffer.array(), lineStart, i - lineStart, StandardCharsets.UTF_8);
+                handleCommand(line);
+                lineStart = i + 1;
+                if (!isRunning()) {
+                    closeConnection();
+                    return -1;
+                }
+            }
+        }
+        return lineStart;
+    }
+
+    // Same for the handshake and length-prefixed binary inputs
+    private int consumeBinary() {
+        byte[] bytes = readBuffer.array();
+        int position = readBuffer.position();
+        int limit = readBuffer.limit();
+        if (protocol == HANDSHAKE) {
+            if (limit - position < BinaryProtocol.HANDSHAKE_LENGTH) return position;
+            if (!acceptHandshake(bytes, position)) {
+                closeConnection();
+                abortTransport();
+                return -1;
+            }
+            position += BinaryProtocol.HANDSHAKE_LENGTH;
+            protocol = BINARY;
+        }
+        while (position < limit) {
+            int length = bytes[position] & 0xFF;
+            if (length == 0 || length > BinaryProtocol.MAX_INPUT_LENGTH) {
+                closeConnection(); // Not our protocol
+                abortTransport();
+                return -1;
+            }
+            if (limit - position - 1 < length) break; // Wait for the rest
+            handleBinaryInput(bytes, position + 1, length);
+            position += 1 + length;
+            if (!isRunning()) {
+                closeConnection();
+                return -1;
+            }
+        }
+        return position;
+    }
+
+    // Called on the selector thread when the socket can accept more bytes.
+    // Queued frames go out in one gathering write instead of one syscall each.
+    void onWritable() throws IOException {
+        while (true) {
+            while (!closeRequested && pending.size() < MAX_GATHER) {
+                Frame frame = outbound.poll();
+                if (frame == null) break;
+                if (frame == OutboundQueue.CLOSE) {
+                    closeRequested = true;
+                    break;
+                }
+                pending.add(frame.asByteBuffer());
+            }
+            if (pending.isEmpty()) break;
+
+            int count = pending.size();
+            channel.write(pending.toArray(gather), 0, count);
+            while (!pending.isEmpty() && !pending.peek().hasRemaining()) {
+                pending.poll();
+            }
+            if (!pending.isEmpty()) {
+                return; // Kernel buffer is full, wait for the next OP_WRITE
+            }
+        }
+
+        if (closeRequested) {
+            abortTransport();
+            return;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        // A frame may have been queued after the loop emptied the queue
+        if (!outbound.isEmpty()) {
+            server.requestWrite(this);
+        }
+    }
+
+    SelectionKey getKey() {
+        return key;
+    }
+}
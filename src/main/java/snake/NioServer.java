@@ -0,0 +1,99 @@
+package snake;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Single-threaded, non-blocking accept/read/write loop. All connections share
+// one selector thread, so idle players cost a couple of buffers instead of a thread.
+public class NioServer {
+    private final int port;
+    private final RoomManager rooms;
+    private final Queue<NioPlayerHandler> pendingWrites = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+    private int playerCounter = 0;
+
+    public NioServer(int port, RoomManager rooms) {
+        this.port = port;
+        this.rooms = rooms;
+    }
+
+    public void run() throws IOException {
+        selector = Selector.open();
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+            while (true) {
+                selector.select();
+                registerPendingWrites();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+
+                    if (key.isAcceptable()) {
+                        accept(serverChannel);
+                        continue;
+                    }
+
+                    NioPlayerHandler player = (NioPlayerHandler) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            player.onReadable();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            player.onWritable();
+                        }
+                    } catch (IOException e) {
+                        // This is expected when a client disconnects
+                        player.closeConnection();
+                        player.abortTransport();
+                    }
+                }
+            }
+        } finally {
+            selector.close();
+        }
+    }
+
+    // May be called from any thread (usually the game thread)
+    void requestWrite(NioPlayerHandler player) {
+        pendingWrites.add(player);
+        selector.wakeup();
+    }
+
+    private void registerPendingWrites() {
+        NioPlayerHandler player;
+        while ((player = pendingWrites.poll()) != null) {
+            SelectionKey key = player.getKey();
+            if (key != null && key.isValid()) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    private void accept(ServerSocketChannel serverChannel) throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+
+        System.out.println("New player connected: " + channel.getRemoteAddress());
+        char playerChar = SnakeServer.PLAYER_CHARS[playerCounter % SnakeServer.PLAYER_CHARS.length];
+        playerCounter++;
+
+        Game room = rooms.pickRoom();
+        NioPlayerHandler player = new NioPlayerHandler(channel, this, room, playerChar, room.getPlayers());
+        player.setKey(channel.register(selector, SelectionKey.OP_READ, player));
+        rooms.admit(player);
+    }
+}
@@ -0,0 +1,56 @@
+package snake;
+
+// Which snake segments sit on each board cell, kept up to date as heads are added and
+// tails removed, so collision checks are one array lookup per head instead of a walk
+// over every body.
+//
+// A cell stores how many segments cover it and the sum of their snake ids. A head whose
+// cell count is above 1 has hit something; if the one other segment there carries its
+// own id, it hit itself.
+public class Occupancy {
+    private final int width;
+    private final int height;
+    private final int[] counts;
+    private final long[] idSums;
+
+    public Occupancy(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.counts = new int[width * height];
+        this.idSums = new long[width * height];
+    }
+
+    public void occupy(int x, int y, int snakeId) {
+        if (!inBounds(x, y)) return;
+        int cell = y * width + x;
+        counts[cell]++;
+        idSums[cell] += snakeId;
+    }
+
+    public void release(int x, int y, int snakeId) {
+        if (!inBounds(x, y)) return;
+        int cell = y * width + x;
+        counts[cell]--;
+        idSums[cell] -= snakeId;
+    }
+
+    public boolean isFree(int x, int y) {
+        return inBounds(x, y) && counts[y * width + x] == 0;
+    }
+
+    // True if something other than the head itself covers this cell
+    public boolean isCrowded(int x, int y) {
+        return inBounds(x, y) && counts[y * width + x] > 1;
+    }
+
+    // True if the head shares its cell with exactly one segment, and that segment is its own
+    public boolean isSelfCollision(int x, int y, int snakeId) {
+        if (!inBounds(x, y)) return false;
+        int cell = y * width + x;
+        return counts[cell] == 2 && idSums[cell] == 2L * snakeId;
+    }
+
+    private boolean inBounds(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+}
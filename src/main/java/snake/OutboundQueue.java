@@ -0,0 +1,89 @@
+package snake;
+
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+
+// Bounded buffer of frames waiting to be written to one player. The game thread only
+// ever offers (never blocks); the player's writer drains it at whatever pace the socket allows.
+//
+// Tuning (system properties):
+//   snake.outbound.capacity   frames buffered per player (default 8)
+//   snake.outbound.policy     "drop" keeps the newest frames and discards the oldest,
+//                             "disconnect" discards new frames and drops the player after
+//                             snake.outbound.maxMissed of them in a row (default 40)
+public class OutboundQueue {
+
+    public enum Policy { DROP_OLDEST, DISCONNECT }
+
+    public enum Result {
+        QUEUED,   // Frame will be delivered
+        DROPPED,  // A frame was lost; the client's view is now stale
+        OVERFLOW, // The consumer is too slow and should be disconnected
+        SKIPPED   // A text frame after the switch to binary; never sent
+    }
+
+    static final int CAPACITY = Integer.getInteger("snake.outbound.capacity", 8);
+    static final Policy POLICY = "disconnect".equals(System.getProperty("snake.outbound.policy"))
+            ? Policy.DISCONNECT : Policy.DROP_OLDEST;
+    static final int MAX_MISSED = Integer.getInteger("snake.outbound.maxMissed", 40);
+
+    // Marks the end of the stream: the writer closes the connection when it gets here
+    static final Frame CLOSE = Frame.of("");
+
+    private final BlockingDeque<Frame> frames = new LinkedBlockingDeque<>(CAPACITY);
+    private int missedInARow = 0;
+    private long droppedTotal = 0;
+    private boolean textClosed = false;
+
+    public synchronized Result offer(Frame frame) {
+        if (textClosed && frame.isText()) return Result.SKIPPED;
+        if (frames.offerLast(frame)) {
+            missedInARow = 0;
+            return Result.QUEUED;
+        }
+
+        droppedTotal++;
+        if (POLICY == Policy.DROP_OLDEST) {
+            frames.pollFirst();
+            frames.offerLast(frame);
+            return Result.DROPPED;
+        }
+        return ++missedInARow >= MAX_MISSED ? Result.OVERFLOW : Result.DROPPED;
+    }
+
+    // From now on text frames are skipped: the client is switching to the binary protocol,
+    // and a tick that has not seen the switch yet may still offer one
+    public synchronized void closeText() {
+        textClosed = true;
+    }
+
+    // Always succeeds, discarding the oldest frame if needed
+    public synchronized void offerClose() {
+        if (!frames.offerLast(CLOSE)) {
+            frames.pollFirst();
+            frames.offerLast(CLOSE);
+        }
+    }
+
+    // Blocks the writer until a frame is available
+    public Frame take() throws InterruptedException {
+        return frames.takeFirst();
+    }
+
+    // Non-blocking variant for the NIO selector thread
+    public Frame poll() {
+        return frames.pollFirst();
+    }
+
+    public boolean isEmpty() {
+        return frames.isEmpty();
+    }
+
+    public int size() {
+        return frames.size();
+    }
+
+    public synchronized long getDroppedTotal() {
+        return droppedTotal;
+    }
+}
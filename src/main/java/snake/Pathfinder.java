@@ -0,0 +1,190 @@
+package snake;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Picks directions for server-side bots (see BotPlayer) with breadth-first searches from
+// the head over free cells: one for the nearest fruit, and a small flood fill per possible
+// move to stay out of dead ends shorter than the snake. Cells next to another snake's head
+// are a last resort, since both heads may enter them on the same tick.
+//
+// One Pathfinder serves every bot of a room, on the tick thread, and allocates nothing
+// per decision: visited cells are marked with a stamp that is bumped per search instead
+// of clearing an array, the queue is a fixed int[] of cell indexes, and the first move
+// that reached each cell is a byte per cell. A search gives up after SEARCH_LIMIT cells,
+// so a decision costs about the same on a 60x25 map as on a 2000x2000 arena.
+//
+// Tuning (system property):
+//   snake.bots.searchLimit   cells one search may visit (default 600)
+public class Pathfinder {
+    static final int SEARCH_LIMIT = Math.max(16, Integer.getInteger("snake.bots.searchLimit", 600));
+
+    private static final Snake.Direction[] DIRECTIONS = Snake.Direction.values();
+    private static final int[] DX = {0, 0, -1, 1}; // Same order as Snake.Direction
+    private static final int[] DY = {-1, 1, 0, 0};
+
+    private final int width;
+    private final int height;
+    private final int[] visited;
+    private final byte[] firstMove;
+    private final int[] queue = new int[SEARCH_LIMIT];
+    private final int[] room = new int[DIRECTIONS.length];
+    private int stamp = 0;
+    // Cells next to a head this tick: the tick they were marked on and the snake that
+    // marked them (-1 if more than one)
+    private final int[] nearHeadTick;
+    private final int[] nearHeadOf;
+    private int tick = 1; // The arrays start at 0, so nothing counts as marked before markHeads
+
+    public Pathfinder(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.visited = new int[width * height];
+        this.firstMove = new byte[width * height];
+        this.nearHeadTick = new int[width * height];
+        this.nearHeadOf = new int[width * height];
+    }
+
+    // Call once per tick, before the bots choose
+    public void markHeads(List<Snake> snakes) {
+        tick++;
+        for (Snake snake : snakes) {
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+                int x = snake.getHeadX() + DX[d];
+                int y = snake.getHeadY() + DY[d];
+                if (x < 0 || x >= width || y < 0 || y >= height) continue;
+                int cell = y * width + x;
+                if (nearHeadTick[cell] != tick) {
+                    nearHeadTick[cell] = tick;
+                    nearHeadOf[cell] = snake.getId();
+                } else if (nearHeadOf[cell] != snake.getId()) {
+                    nearHeadOf[cell] = -1;
+                }
+            }
+        }
+    }
+
+    // True if this pathfinder was sized for the board (boards change on level up)
+    public boolean fits(Board board) {
+        return board.getWidth() == width && board.getHeight() == height;
+    }
+
+    // Direction for the snake's next move: towards the nearest reachable fruit unless that
+    // leads into a pocket too small for it, otherwise towards the most open space. null if
+    // every move is blocked.
+    public Snake.Direction choose(Board board, Snake snake) {
+        int headX = snake.getHeadX();
+        int headY = snake.getHeadY();
+        int current = snake.getDirection().ordinal();
+        int needed = snake.getLength() + 2;
+
+        // How much room each move leaves, counting up to what the snake needs
+        int best = -1;
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+            room[d] = isReverse(d, current) ? 0 : floodFill(board, headX + DX[d], headY + DY[d], needed);
+            if (room[d] > 0 && isNearOtherHead(headX + DX[d], headY + DY[d], snake.getId())) {
+                room[d] = 1; // Still better than a wall
+            }
+            if (room[d] > 0 && (best < 0 || room[d] > room[best] || (room[d] == room[best] && d == current))) {
+                best = d;
+            }
+        }
+        if (best < 0) return null;
+
+        int toFruit = nearestFruit(board, headX, headY, current);
+        if (toFruit >= 0 && room[toFruit] >= Math.min(needed, room[best])) {
+            return DIRECTIONS[toFruit];
+        }
+        return DIRECTIONS[best];
+    }
+
+    // First move of a shortest path to a fruit, or -1 if none within SEARCH_LIMIT cells
+    private int nearestFruit(Board board, int headX, int headY, int current) {
+        nextStamp();
+        int head = headY * width + headX;
+        visited[head] = stamp;
+        int tail = 0;
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+            if (isReverse(d, current)) continue;
+            int x = headX + DX[d];
+            int y = headY + DY[d];
+            if (!isFree(board, x, y)) continue;
+            int cell = y * width + x;
+            if (isFruit(board, x, y)) return d;
+            visited[cell] = stamp;
+            firstMove[cell] = (byte) d;
+            queue[tail++] = cell;
+        }
+        for (int headOfQueue = 0; headOfQueue < tail; headOfQueue++) {
+            int cell = queue[headOfQueue];
+            int cx = cell % width;
+            int cy = cell / width;
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+                int x = cx + DX[d];
+                int y = cy + DY[d];
+                if (!isFree(board, x, y)) continue;
+                int next = y * width + x;
+                if (visited[next] == stamp) continue;
+                if (isFruit(board, x, y)) return firstMove[cell];
+                if (tail == queue.length) return -1;
+                visited[next] = stamp;
+                firstMove[next] = firstMove[cell];
+                queue[tail++] = next;
+            }
+        }
+        return -1;
+    }
+
+    // Free cells reachable from (x, y), counting no further than limit; 0 if it is blocked
+    private int floodFill(Board board, int x, int y, int limit) {
+        if (!isFree(board, x, y)) return 0;
+        limit = Math.min(limit, queue.length);
+        nextStamp();
+        int start = y * width + x;
+        visited[start] = stamp;
+        queue[0] = start;
+        int tail = 1;
+        for (int headOfQueue = 0; headOfQueue < tail && tail < limit; headOfQueue++) {
+            int cell = queue[headOfQueue];
+            int cx = cell % width;
+            int cy = cell / width;
+            for (int d = 0; d < DIRECTIONS.length && tail < limit; d++) {
+                int nx = cx + DX[d];
+                int ny = cy + DY[d];
+                if (!isFree(board, nx, ny)) continue;
+                int next = ny * width + nx;
+                if (visited[next] == stamp) continue;
+                visited[next] = stamp;
+                queue[tail++] = next;
+            }
+        }
+        return tail;
+    }
+
+    private boolean isNearOtherHead(int x, int y, int snakeId) {
+        int cell = y * width + x;
+        return nearHeadTick[cell] == tick && nearHeadOf[cell] != snakeId;
+    }
+
+    private void nextStamp() {
+        if (++stamp == 0) {
+            // Wrapped after 4 billion searches: forget every old mark once
+            Arrays.fill(visited, 0);
+            stamp = 1;
+        }
+    }
+
+    private boolean isFree(Board board, int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height
+                && !board.isWall(x, y) && board.getOccupancy().isFree(x, y);
+    }
+
+    private static boolean isFruit(Board board, int x, int y) {
+        char cell = board.getCell(x, y);
+        return cell >= '1' && cell <= '9';
+    }
+
+    private static boolean isReverse(int direction, int current) {
+        return DX[direction] == -DX[current] && DY[direction] == -DY[current];
+    }
+}
@@ -0,0 +1,505 @@
+package snake;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class PlayerHandler implements Runnable {
+    private static final SecureRandom TOKENS = new SecureRandom();
+
+    private Socket socket;
+    private volatile Game game;
+    private volatile RoomManager rooms;
+    private volatile Snake snake; // Set by the game thread, read by the connection's
+    private OutputStream out;
+    private Thread writer;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    // Set once this connection has entered its room as a player or a spectator; until
+    // then the first command decides which (see RoomManager.admit)
+    private final AtomicBoolean placed = new AtomicBoolean(false);
+    protected final OutboundQueue outbound = new OutboundQueue();
+    private volatile List<PlayerHandler> players;
+    private volatile boolean running = true;
+    private volatile boolean quitting = false; // Left on purpose: no grace for its snake
+    private final char playerChar;
+    private volatile boolean deltaMode = false;
+    private volatile boolean keyframeRequested = false;
+    private volatile boolean binary = false;
+    private volatile boolean spectating = false;
+    // Identifies this player's snake across a dropped connection or a server restart
+    // (see RoomManager.reclaim)
+    private volatile long token = TOKENS.nextLong();
+    private final Viewport viewport = new Viewport();
+    private final InputBuffer inputs = new InputBuffer();
+
+    public PlayerHandler(Socket socket, Game game, char playerChar, List<PlayerHandler> players) {
+        this(game, playerChar, players);
+        this.socket = socket;
+        try {
+            this.out = socket.getOutputStream();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Used by handlers that bring their own transport (see NioPlayerHandler)
+    protected PlayerHandler(Game game, char playerChar, List<PlayerHandler> players) {
+        this.game = game;
+        this.playerChar = playerChar;
+        this.players = players;
+    }
+
+    @Override
+    public void run() {
+        startWriter();
+        try (InputStream in = new BufferedInputStream(socket.getInputStream())) {
+            // The first byte tells a binary client from a text one (see BinaryProtocol)
+            in.mark(1);
+            int first = in.read();
+            if (first == BinaryProtocol.MAGIC) {
+                readBinary(in);
+            } else if (first >= 0) {
+                in.reset();
+                BufferedReader lines = new BufferedReader(new InputStreamReader(in));
+                String inputLine;
+                while (running && (inputLine = lines.readLine()) != null) {
+                    handleCommand(inputLine);
+                }
+            }
+        } catch (IOException e) {
+            // This is expected when a client disconnects
+        } finally {
+            closeConnection();
+        }
+    }
+
+    private void readBinary(InputStream in) throws IOException {
+        byte[] handshake = new byte[BinaryProtocol.HANDSHAKE_LENGTH];
+        handshake[0] = (byte) BinaryProtocol.MAGIC;
+        int rest = handshake.length - 1;
+        if (in.readNBytes(handshake, 1, rest) < rest || !acceptHandshake(handshake, 0)) return;
+
+        byte[] input = new byte[BinaryProtocol.MAX_INPUT_LENGTH];
+        while (running) {
+            int length = in.read();
+            if (length <= 0 || length > input.length) return; // End of stream or not our protocol
+            if (in.readNBytes(input, 0, length) < length) return;
+            handleBinaryInput(input, 0, length);
+        }
+    }
+
+    // Each connection drains its own queue, so a stalled socket only blocks this thread.
+    // The writer runs on the same kind of thread (platform or virtual) as the reader.
+    private synchronized void startWriter() {
+        if (closed.get()) return;
+        Thread.Builder builder = Thread.currentThread().isVirtual() ? Thread.ofVirtual() : Thread.ofPlatform().daemon(true);
+        writer = builder.name("writer-" + playerChar).start(this::drainOutbound);
+    }
+
+    private void drainOutbound() {
+        try {
+            Frame frame;
+            while ((frame = outbound.take()) != OutboundQueue.CLOSE) {
+                frame.writeTo(out);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // Client went away; the reader notices too
+        }
+        closeSocket();
+    }
+
+    public void handleCommand(String inputLine) {
+        String command = inputLine.trim().toLowerCase();
+        if (!placed.get()) {
+            Long oldToken = null;
+            if (command.startsWith("reclaim ")) {
+                try {
+                    oldToken = Long.parseUnsignedLong(command.substring(8).trim(), 16);
+                } catch (NumberFormatException e) {
+                    // Handled as a command below, once seated
+                }
+            }
+            if (enterRoom(command.equals("spectate"), oldToken)) return;
+        }
+        if (!inputs.allowCommand()) return;
+        if (command.equals("delta")) {
+            // Client keeps its own grid: send a keyframe, then only changed cells
+            keyframeRequested = true;
+            deltaMode = true;
+            return;
+        }
+        if (command.startsWith("view ")) {
+            String[] size = command.substring(5).trim().split("\\s+");
+            try {
+                viewport.setSize(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                sendMessage("Usage: view <width> <height>");
+            }
+            return;
+        }
+        if (command.equals("spectate")) {
+            spectate();
+            return;
+        }
+        if (command.equals("token")) {
+            sendToken();
+            return;
+        }
+        if (command.equals("highscores")) {
+            sendHighScores();
+            return;
+        }
+        if (command.startsWith("reclaim ")) {
+            try {
+                reclaim(Long.parseUnsignedLong(command.substring(8).trim(), 16));
+            } catch (NumberFormatException e) {
+                sendMessage("Usage: reclaim <token>");
+            }
+            return;
+        }
+        if (command.startsWith("room ")) {
+            try {
+                moveToRoom(Integer.parseInt(command.substring(5).trim()));
+            } catch (NumberFormatException e) {
+                sendMessage("Usage: room <number>");
+            }
+            return;
+        }
+
+        switch (command) {
+            case "w":
+                turn(Snake.Direction.UP);
+                break;
+            case "s":
+                turn(Snake.Direction.DOWN);
+                break;
+            case "a":
+                turn(Snake.Direction.LEFT);
+                break;
+            case "d":
+                turn(Snake.Direction.RIGHT);
+                break;
+            case "quit":
+                quit();
+                break;
+        }
+    }
+
+    // Validates a binary client's handshake (HANDSHAKE_LENGTH bytes at offset) and answers
+    // with HELLO. False if it is not a handshake we can speak; the caller then disconnects.
+    boolean acceptHandshake(byte[] handshake, int offset) {
+        for (int i = 0; i < BinaryProtocol.HANDSHAKE_PREFIX.length; i++) {
+            if (handshake[offset + i] != BinaryProtocol.HANDSHAKE_PREFIX[i]) return false;
+        }
+        int version = handshake[offset + BinaryProtocol.HANDSHAKE_PREFIX.length] & 0xFF;
+        int capabilities = handshake[offset + BinaryProtocol.HANDSHAKE_PREFIX.length + 1] & 0xFF;
+        if (version < 1) return false;
+
+        int agreed = capabilities & BinaryProtocol.SERVER_CAPS;
+        deltaMode = (agreed & BinaryProtocol.CAP_DELTA) != 0;
+        keyframeRequested = true;
+        // A tick that has not seen the switch yet may still render text for us: the queue
+        // skips it, so nothing but binary follows HELLO. Binary frames start after HELLO.
+        outbound.closeText();
+        sendFrame(BinaryProtocol.hello(Math.min(version, BinaryProtocol.VERSION), agreed));
+        binary = true;
+        return true;
+    }
+
+    // One binary input message (opcode + payload) at offset
+    void handleBinaryInput(byte[] input, int offset, int length) {
+        BinaryProtocol.Reader payload = new BinaryProtocol.Reader(input, offset + 1, length - 1);
+        try {
+            if (!placed.get()) {
+                Long oldToken = input[offset] == BinaryProtocol.IN_RECLAIM ? payload.readLong() : null;
+                if (enterRoom(input[offset] == BinaryProtocol.IN_SPECTATE, oldToken)) return;
+            }
+            if (!inputs.allowCommand()) return;
+            switch (input[offset]) {
+                case BinaryProtocol.IN_UP:
+                    turn(Snake.Direction.UP);
+                    break;
+                case BinaryProtocol.IN_DOWN:
+                    turn(Snake.Direction.DOWN);
+                    break;
+                case BinaryProtocol.IN_LEFT:
+                    turn(Snake.Direction.LEFT);
+                    break;
+                case BinaryProtocol.IN_RIGHT:
+                    turn(Snake.Direction.RIGHT);
+                    break;
+                case BinaryProtocol.IN_QUIT:
+                    quit();
+                    break;
+                case BinaryProtocol.IN_ROOM:
+                    moveToRoom(payload.readVarint());
+                    break;
+                case BinaryProtocol.IN_VIEW:
+                    viewport.setSize(payload.readVarint(), payload.readVarint());
+                    break;
+                case BinaryProtocol.IN_SPECTATE:
+                    spectate();
+                    break;
+                case BinaryProtocol.IN_TOKEN:
+                    sendToken();
+                    break;
+                case BinaryProtocol.IN_RECLAIM:
+                    reclaim(payload.readLong());
+                    break;
+            }
+        } catch (IOException e) {
+            // Truncated payload: ignore the input
+        }
+    }
+
+    // A new connection's first command: a viewer starts watching without ever getting a
+    // snake, a reclaim (oldToken not null) takes its old snake back instead of getting a
+    // new one, anything else joins as a player first. True if the command was used up.
+    private boolean enterRoom(boolean spectate, Long oldToken) {
+        if (rooms == null || !claimPlacement()) return false;
+        if (spectate) {
+            rooms.placeSpectator(this);
+            return true;
+        }
+        if (oldToken != null) {
+            rooms.placeReclaiming(this, oldToken);
+            return true;
+        }
+        rooms.placePlayer(this);
+        return false;
+    }
+
+    // True for the one caller that gets to put this connection in its room
+    boolean claimPlacement() {
+        return placed.compareAndSet(false, true);
+    }
+
+    // Applied by the game thread on a later tick (see InputBuffer)
+    private void turn(Snake.Direction direction) {
+        if (snake == null) return; // Don't process commands if snake isn't ready
+        inputs.offer(direction);
+    }
+
+    // Ends the connection even before the room has spawned this player's snake: the
+    // spawn, still queued, sees the connection closed and is dropped (see closeConnection)
+    private void quit() {
+        quitting = true;
+        running = false;
+    }
+
+    void sendToken() {
+        sendMessage(String.format("Session token: %016x", token));
+    }
+
+    private void sendHighScores() {
+        HighScores table = rooms != null ? rooms.getHighScores() : null;
+        if (table == null) {
+            sendMessage("This server keeps no high scores");
+            return;
+        }
+        for (String line : table.lines()) {
+            sendMessage(line);
+        }
+    }
+
+    // Takes back the snake this token owned before a dropped connection or a restart
+    private void reclaim(long oldToken) {
+        if (spectating || rooms == null) return;
+        rooms.reclaim(this, oldToken);
+    }
+
+    // Gives up the snake and keeps watching the same room
+    private void spectate() {
+        if (spectating || rooms == null) return;
+        rooms.spectate(this);
+    }
+
+    private void moveToRoom(int roomId) {
+        if (rooms != null) {
+            rooms.move(this, roomId);
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public long getToken() {
+        return token;
+    }
+
+    void setToken(long token) {
+        this.token = token;
+    }
+
+    public boolean isSpectating() {
+        return spectating;
+    }
+
+    // A spectator sits in the room's spectator list instead of its player list
+    void setSpectating(boolean spectating) {
+        this.spectating = spectating;
+        this.players = spectating ? game.getSpectators() : game.getPlayers();
+    }
+
+    public int getOutboundDepth() {
+        return outbound.size();
+    }
+
+    public boolean isDeltaMode() {
+        return deltaMode;
+    }
+
+    public InputBuffer getInputs() {
+        return inputs;
+    }
+
+    public Viewport getViewport() {
+        return viewport;
+    }
+
+    // True once after the client switched to delta mode, changed room or lost a frame
+    public boolean takeKeyframeRequest() {
+        if (!keyframeRequested) return false;
+        keyframeRequested = false;
+        return true;
+    }
+
+    public void sendMessage(String message) {
+        sendFrame(binary ? BinaryProtocol.text(message) : Frame.of(message));
+    }
+
+    public void sendGameOver() {
+        sendFrame(binary ? BinaryProtocol.gameOver() : Frame.of("GAME OVER"));
+    }
+
+    // Never blocks: the frame is queued for this player's writer. What happens when
+    // the queue is full depends on OutboundQueue's slow-consumer policy.
+    public void sendFrame(Frame frame) {
+        if (closed.get()) return;
+        switch (outbound.offer(frame)) {
+            case QUEUED:
+                Metrics.FRAMES_QUEUED.increment();
+                Metrics.BYTES_QUEUED.add(frame.length());
+                break;
+            case DROPPED:
+                Metrics.FRAMES_DROPPED.increment();
+                keyframeRequested = true; // Lost a delta, resync on the next tick
+                break;
+            case OVERFLOW:
+                System.out.println("Player " + playerChar + " is not reading, disconnecting.");
+                closeConnection();
+                abortTransport(); // The writer may be stuck in a write, don't wait for it
+                return;
+            case SKIPPED:
+                return;
+        }
+        onFrameQueued();
+    }
+
+    // Hook for transports that need a wake-up when there is something to send
+    protected void onFrameQueued() {
+    }
+
+    public void closeConnection() {
+        if (closed.getAndSet(true)) return;
+        Snake left;
+        Game room;
+        synchronized (this) {
+            // With the lock RoomManager hands out snakes under, so none arrives after this:
+            // a join still queued in the room sees the connection closed and does nothing,
+            // and one not even placed yet never will be
+            this.running = false;
+            placed.set(true);
+            left = snake;
+            room = game;
+        }
+        if (left != null) {
+            // A dropped connection keeps its snake for a while, in case the player comes back
+            if (quitting || Game.RESUME_GRACE_MILLIS == 0) {
+                room.enqueue(() -> room.removeSnake(left));
+            } else {
+                room.parkLater(left, Game.RESUME_GRACE_MILLIS);
+            }
+        }
+        players.remove(this);
+        closeTransport();
+        System.out.println("Player " + playerChar + " connection closed.");
+    }
+
+    // Lets the writer flush what is queued (e.g. "GAME OVER") before the socket closes
+    protected synchronized void closeTransport() {
+        if (writer == null) {
+            // Writer never started (rejected before run()): flush inline
+            try {
+                Frame frame;
+                while (out != null && (frame = outbound.poll()) != null) {
+                    frame.writeTo(out);
+                }
+            } catch (IOException e) {
+                // Client already gone
+            }
+            closeSocket();
+            return;
+        }
+        outbound.offerClose();
+    }
+
+    protected void abortTransport() {
+        closeSocket();
+    }
+
+    private void closeSocket() {
+        try {
+            if (socket != null && !socket.isClosed()) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public Game getGame() {
+        return game;
+    }
+
+    // Switches this connection to another room; delta clients need a fresh keyframe
+    public void setGame(Game game) {
+        this.game = game;
+        this.players = spectating ? game.getSpectators() : game.getPlayers();
+        this.keyframeRequested = true;
+    }
+
+    void requestKeyframe() {
+        this.keyframeRequested = true;
+    }
+
+    void setRooms(RoomManager rooms) {
+        this.rooms = rooms;
+    }
+
+    public Snake getSnake() {
+        return snake;
+    }
+
+    public void setSnake(Snake snake) {
+        this.snake = snake;
+    }
+
+    public char getPlayerChar() {
+        return playerChar;
+    }
+}
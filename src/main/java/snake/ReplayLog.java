@@ -0,0 +1,218 @@
+package snake;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+// Append-only record of everything that is not decided by the game itself: who joined
+// and left, and which turns were applied on each tick. With the seed in the header
+// (boards, spawns and fruit all come from it) that is enough to re-run a match exactly;
+// see Replayer.
+//
+//   header   "SNKR" <version u8> <seed i64> <level> <arena width> <arena height> <arena seed i64>
+//   JOIN     <player>                 a player asked to join (it may not have found room)
+//   LEAVE    <player>                 a player's snake left (quit, room change, spectate, grace ran out)
+//   TURN     <player> <direction u8>  applied at the start of the next TICK
+//   TICK                              one tick ran
+//   CHECK    <hash i32>               state hash after the last TICK, to catch divergence
+//   PARK     <player>                 the player's connection dropped; its snake waits (v2)
+//   RESUME   <player>                 the player reclaimed its parked snake (v2)
+//
+// Players are numbered in join order; numbers are varints. Deaths are not logged:
+// replaying the ticks reproduces them. A parked snake nobody reclaims is logged as LEAVE.
+public final class ReplayLog {
+    static final byte[] MAGIC = {'S', 'N', 'K', 'R'};
+    static final int VERSION = 2;
+
+    static final int JOIN = 1;
+    static final int LEAVE = 2;
+    static final int TURN = 3;
+    static final int TICK = 4;
+    static final int CHECK = 5;
+    static final int PARK = 6;
+    static final int RESUME = 7;
+
+    static final int CHECK_EVERY_TICKS = 50;
+    private static final int FLUSH_EVERY_TICKS = 40;
+
+    private ReplayLog() {
+    }
+
+    // Writes one game's log. Called with the game's lock held.
+    public static final class Writer {
+        private final DataOutputStream out;
+        private final Map<Snake, Integer> playerOfSnake = new HashMap<>();
+        private int nextPlayer = 0;
+        private int pendingPlayer = -1;
+        private long ticks = 0;
+        private boolean failed = false;
+
+        public Writer(Path file, long seed, int level, int arenaWidth, int arenaHeight, long arenaSeed) throws IOException {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(seed);
+            writeVarint(level);
+            writeVarint(arenaWidth);
+            writeVarint(arenaHeight);
+            out.writeLong(arenaSeed);
+        }
+
+        public void join() {
+            pendingPlayer = nextPlayer++;
+            record(JOIN, pendingPlayer);
+        }
+
+        // The snake the last joined player got, if it found room
+        public void spawned(Snake snake) {
+            playerOfSnake.put(snake, pendingPlayer);
+        }
+
+        public void leave(Snake snake) {
+            Integer player = playerOfSnake.remove(snake);
+            if (player != null) record(LEAVE, player);
+        }
+
+        // A snake that died in a tick: nothing to log, the replay kills it too
+        public void died(Snake snake) {
+            playerOfSnake.remove(snake);
+        }
+
+        public void park(Snake snake) {
+            Integer player = playerOfSnake.get(snake);
+            if (player != null) record(PARK, player);
+        }
+
+        public void resume(Snake snake) {
+            Integer player = playerOfSnake.get(snake);
+            if (player != null) record(RESUME, player);
+        }
+
+        public void turn(Snake snake, Snake.Direction direction) {
+            Integer player = playerOfSnake.get(snake);
+            if (player == null) return;
+            record(TURN, player);
+            write(direction.ordinal());
+        }
+
+        // stateHash is only asked for on CHECK ticks
+        public void tick(IntSupplier stateHash) {
+            write(TICK);
+            ticks++;
+            if (ticks % CHECK_EVERY_TICKS == 0) {
+                write(CHECK);
+                if (failed) return;
+                try {
+                    out.writeInt(stateHash.getAsInt());
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+            if (ticks % FLUSH_EVERY_TICKS == 0) {
+                flush();
+            }
+        }
+
+        public void close() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void flush() {
+            if (failed) return;
+            try {
+                out.flush();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void record(int type, int player) {
+            write(type);
+            writeVarint(player);
+        }
+
+        private void write(int b) {
+            if (failed) return;
+            try {
+                out.writeByte(b);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        // A full disk should not stop the game: report once and stop recording
+        private void fail(IOException e) {
+            if (!failed) {
+                failed = true;
+                System.out.println("Replay recording failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // Reads a log back, one record at a time
+    public static final class Reader implements AutoCloseable {
+        private final DataInputStream in;
+        final long seed;
+        final int level;
+        final int arenaWidth;
+        final int arenaHeight;
+        final long arenaSeed;
+
+        public Reader(Path file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a replay file: " + file);
+            int version = in.readUnsignedByte();
+            if (version < 1 || version > VERSION) throw new IOException("Unsupported replay version " + version);
+            seed = in.readLong();
+            level = readVarint();
+            arenaWidth = readVarint();
+            arenaHeight = readVarint();
+            arenaSeed = in.readLong();
+        }
+
+        // Record type, or -1 at the end of the log
+        public int next() throws IOException {
+            return in.read();
+        }
+
+        public int readVarint() throws IOException {
+            return BinaryProtocol.readVarint(in);
+        }
+
+        public int readByte() throws IOException {
+            return in.readUnsignedByte();
+        }
+
+        public int readInt() throws IOException {
+            return in.readInt();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
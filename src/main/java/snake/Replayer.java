@@ -0,0 +1,123 @@
+package snake;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+// Re-runs a recorded match (see ReplayLog) with no network, no rendering and no tick
+// timer, checking the recorded state hashes along the way. Use it to reproduce a bug
+// from a production log, or to time Game.tick on real traffic.
+//
+//   java -Dsnake.replay.dir=replays snake.SnakeServer   (records replays/room-<id>-<time>.snkr)
+//   java snake.Replayer replays/room-1-20260101-120000.snkr
+//   java snake.Replayer <file> parallel                  (force the parallel tick)
+public class Replayer {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java snake.Replayer <replay file> [parallel]");
+            return;
+        }
+        Path file = Paths.get(args[0]);
+        boolean parallel = args.length > 1 && args[1].equals("parallel");
+
+        List<PlayerHandler> players = new CopyOnWriteArrayList<>();
+        Map<Integer, HeadlessPlayer> byNumber = new HashMap<>();
+        long ticks = 0;
+        long checks = 0;
+        int joins = 0;
+        long tickNanos = 0;
+        long recordedMillis = 0;
+        long start = System.nanoTime();
+
+        Board.loadLevels(); // The same snake.maps.dir the match was recorded with
+
+        try (ReplayLog.Reader log = new ReplayLog.Reader(file)) {
+            Game game = new Game(players, log.level);
+            game.useSeed(log.seed);
+            if (log.arenaWidth > 0) {
+                game.useArena(log.arenaWidth, log.arenaHeight, log.arenaSeed);
+            }
+            if (parallel) {
+                game.setParallelTick(true);
+            }
+
+            int type;
+            while ((type = log.next()) >= 0) {
+                switch (type) {
+                    case ReplayLog.JOIN: {
+                        int number = log.readVarint();
+                        HeadlessPlayer player = new HeadlessPlayer(game, (char) ('a' + number % 26), players);
+                        byNumber.put(number, player);
+                        joins++;
+                        players.add(player);
+                        game.addNewPlayer(player);
+                        break;
+                    }
+                    case ReplayLog.LEAVE: {
+                        HeadlessPlayer player = byNumber.remove(log.readVarint());
+                        if (player != null && player.getSnake() != null) {
+                            game.removeSnake(player.getSnake());
+                        }
+                        players.remove(player);
+                        break;
+                    }
+                    case ReplayLog.PARK: {
+                        HeadlessPlayer player = byNumber.get(log.readVarint());
+                        if (player != null && player.getSnake() != null) {
+                            // Never runs out here: the recorded LEAVE decides when it goes
+                            game.park(player.getSnake(), TimeUnit.DAYS.toMillis(365));
+                            players.remove(player);
+                        }
+                        break;
+                    }
+                    case ReplayLog.RESUME: {
+                        HeadlessPlayer player = byNumber.get(log.readVarint());
+                        if (player != null && player.getSnake() != null) {
+                            game.unpark(player.getSnake());
+                            players.add(player);
+                        }
+                        break;
+                    }
+                    case ReplayLog.TURN: {
+                        HeadlessPlayer player = byNumber.get(log.readVarint());
+                        Snake.Direction direction = Snake.Direction.values()[log.readByte()];
+                        if (player != null) player.getInputs().offer(direction);
+                        break;
+                    }
+                    case ReplayLog.TICK: {
+                        recordedMillis += game.getTickPeriodMillis();
+                        long tickStart = System.nanoTime();
+                        game.tick();
+                        tickNanos += System.nanoTime() - tickStart;
+                        ticks++;
+                        break;
+                    }
+                    case ReplayLog.CHECK: {
+                        int expected = log.readInt();
+                        int actual = game.stateHash();
+                        if (actual != expected) {
+                            System.out.println("DIVERGED after tick " + ticks + " (state hash "
+                                    + actual + ", recorded " + expected + ")");
+                            System.exit(1);
+                        }
+                        checks++;
+                        break;
+                    }
+                    default:
+                        throw new IOException("Corrupt replay: record type " + type + " after tick " + ticks);
+                }
+            }
+        }
+
+        double wallSeconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d ticks, %d joins, %d state checks passed%n", ticks, joins, checks);
+        System.out.printf("replayed in %.2f s (%.0f ticks/s, %.1f us/tick in Game.tick), %.0fx real time%n",
+                wallSeconds, ticks / wallSeconds, ticks == 0 ? 0 : tickNanos / 1e3 / ticks,
+                recordedMillis / 1000.0 / wallSeconds);
+    }
+}
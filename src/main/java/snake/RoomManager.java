@@ -0,0 +1,447 @@
+package snake;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Hosts many independent Games ("rooms"), each with its own board, players and lock.
+// All rooms tick on one scheduled pool sized to the CPU count, so a room whose tick
+// runs long holds up one worker, not the others.
+//
+// New players go to the first room with a free seat (a new room is opened when all are
+// full); a player can switch with the "room <id>" command, or give up its snake and
+// watch with "spectate". Spectators do not count towards the capacity. A connection
+// only enters its room once it says something: if that is "spectate" it watches without
+// ever getting a snake, anything else gets it one. Clients that stay quiet get one
+// after PLACE_WAIT_MILLIS. Rooms with
+// nobody in them for snake.room.emptyTtl seconds are stopped and dropped.
+//
+// Connection threads (and the NIO selector) never take a room's lock: the player lists
+// are copy-on-write, and snakes are added, removed, parked and reclaimed by changes the
+// room runs on its own thread before its next tick (see Game.enqueue). Those changes
+// never call back into this class's synchronized methods; the sweep holds this lock
+// while it locks rooms. A player's snake is handed out and taken back under the
+// player's lock, so a change that is already out of date (the player left, moved or
+// started watching meanwhile) sees that and does nothing.
+//
+// Tuning (system properties):
+//   snake.room.capacity   players per room before a new one is opened (default 16)
+//   snake.room.emptyTtl   seconds an empty room is kept around (default 30)
+//   snake.arena           WIDTHxHEIGHT, play on generated arenas of that size instead of
+//                         the built-in maps (e.g. 2000x2000 with snake.room.capacity=20000)
+//   snake.arena.seed      seed for the arena walls and fruit (default: random)
+//   snake.seed            seed for the built-in maps' spawns and fruit (room id is added)
+//   snake.replay.dir      directory to record a replay log per room into (see ReplayLog)
+//   snake.snapshot.dir    directory to save every room to (room-<id>.snks), so a restarted
+//                         server can pick up where it left off (SnakeServer --restore)
+//   snake.snapshot.seconds  seconds between snapshots (default 10)
+//   snake.restore.graceSeconds  how long restored snakes wait for their players (default 60)
+//   snake.bots.fill       server-played snakes fill each room up to this many snakes, and
+//                         give their place up to players as they join (default 0, no bots)
+//   snake.highscores.file  file to keep the all-time high scores in (see HighScores;
+//                         default: none)
+public class RoomManager {
+    static final int ROOM_CAPACITY = Integer.getInteger("snake.room.capacity", 16);
+    static final long EMPTY_ROOM_TTL_SECONDS = Long.getLong("snake.room.emptyTtl", 30);
+    static final String ARENA = System.getProperty("snake.arena");
+    static final long ARENA_SEED = Long.getLong("snake.arena.seed", System.nanoTime());
+    static final Long SEED = Long.getLong("snake.seed");
+    static final String REPLAY_DIR = System.getProperty("snake.replay.dir");
+    static final String SNAPSHOT_DIR = System.getProperty("snake.snapshot.dir");
+    static final long SNAPSHOT_SECONDS = Long.getLong("snake.snapshot.seconds", 10);
+    static final long RESTORE_GRACE_SECONDS = Long.getLong("snake.restore.graceSeconds", 60);
+    static final int BOT_FILL = Integer.getInteger("snake.bots.fill", 0);
+    static final String HIGHSCORES_FILE = System.getProperty("snake.highscores.file");
+    private static final long HIGHSCORES_FLUSH_SECONDS = 5;
+    private static final long SWEEP_SECONDS = 5;
+    private static final long PLACE_WAIT_MILLIS = 500;
+    private static final long SHUTDOWN_WAIT_SECONDS = 10;
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final ScheduledExecutorService workers =
+            Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
+    private final Map<Integer, Game> rooms = new TreeMap<>();
+    private final Map<Game, Long> emptySince = new HashMap<>();
+    private int nextRoomId = 1;
+
+    // Writes snapshots and high scores to disk, so neither the rooms nor the workers wait on I/O
+    private final ScheduledExecutorService snapshotter = Executors.newSingleThreadScheduledExecutor();
+    private final HighScores highScores;
+
+    public RoomManager() {
+        highScores = loadHighScores();
+    }
+
+    // Starts the room sweep and the periodic snapshot and high score writes; called once
+    // the saved rooms are back, so the first snapshot cannot race the restore
+    public void start() {
+        workers.scheduleAtFixedRate(this::reclaimEmptyRooms, SWEEP_SECONDS, SWEEP_SECONDS, TimeUnit.SECONDS);
+        if (SNAPSHOT_DIR != null) {
+            snapshotter.scheduleWithFixedDelay(this::saveSnapshots, SNAPSHOT_SECONDS, SNAPSHOT_SECONDS, TimeUnit.SECONDS);
+        }
+        if (highScores != null) {
+            snapshotter.scheduleWithFixedDelay(highScores::flush, HIGHSCORES_FLUSH_SECONDS,
+                    HIGHSCORES_FLUSH_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    // A file that cannot be read turns the table off rather than being overwritten
+    private static HighScores loadHighScores() {
+        if (HIGHSCORES_FILE == null) return null;
+        try {
+            return HighScores.load(Paths.get(HIGHSCORES_FILE));
+        } catch (IOException e) {
+            System.out.println("Cannot read high scores, not keeping any: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // null if the server keeps no high score table
+    public HighScores getHighScores() {
+        return highScores;
+    }
+
+    // Reopens every room saved in snake.snapshot.dir; call before accepting players
+    public synchronized void restoreSnapshots() throws IOException {
+        if (SNAPSHOT_DIR == null) {
+            throw new IOException("Set -Dsnake.snapshot.dir to restore snapshots");
+        }
+        Path dir = Paths.get(SNAPSHOT_DIR);
+        if (!Files.isDirectory(dir)) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "room-*.snks")) {
+            for (Path file : files) {
+                Game room = Game.restore(Files.readAllBytes(file), new CopyOnWriteArrayList<>(),
+                        TimeUnit.SECONDS.toMillis(RESTORE_GRACE_SECONDS));
+                room.setBotFill(BOT_FILL);
+                room.setHighScores(highScores);
+                rooms.put(room.getRoomId(), room);
+                room.start(workers);
+                System.out.println("Restored room " + room.getRoomId() + " from " + file);
+            }
+        }
+    }
+
+    // Moves a player to the room holding the parked snake its old token owned (left by a
+    // dropped connection, or restored from a snapshot)
+    public void reclaim(PlayerHandler player, long token) {
+        reclaim(player, token, false);
+    }
+
+    // A new connection that comes back for its snake: it is seated with the parked snake
+    // and never gets a new one, unless there turns out to be nothing to reclaim
+    void placeReclaiming(PlayerHandler player, long token) {
+        reclaim(player, token, true);
+    }
+
+    private void reclaim(PlayerHandler player, long token, boolean placing) {
+        for (Game room : getRooms()) {
+            if (room.hasParkedSnake(token)) {
+                room.enqueue(() -> reclaimIn(room, player, token, placing));
+                return;
+            }
+        }
+        player.sendMessage("Nothing to reclaim for that token");
+        if (placing) placePlayer(player);
+    }
+
+    // On the target room's thread. The player's current snake is only dropped once the
+    // parked one is theirs; a new connection is only seated once it is.
+    private void reclaimIn(Game target, PlayerHandler player, long token, boolean placing) {
+        synchronized (player) {
+            if (!player.isRunning() || player.isSpectating()) return;
+            Game current = player.getGame();
+            Snake old = player.getSnake();
+            if (!target.reclaim(token, player)) {
+                player.sendMessage("Nothing to reclaim for that token");
+                if (placing) {
+                    // Not from here: join() takes this manager's lock, which the sweep
+                    // holds while it locks rooms
+                    workers.execute(() -> placePlayer(player));
+                }
+                return;
+            }
+            if (old != null) {
+                if (current == target) {
+                    target.removeSnake(old);
+                } else {
+                    current.enqueue(() -> current.removeSnake(old));
+                }
+            }
+            if (target != current) {
+                current.getPlayers().remove(player);
+                player.setGame(target);
+                target.getPlayers().add(player);
+            } else if (placing) {
+                target.getPlayers().add(player);
+            }
+            player.setToken(token);
+        }
+        player.requestKeyframe(); // The client's screen is from before the reconnect
+        player.sendMessage("Reclaimed your snake in room " + target.getRoomId());
+        player.sendToken(); // A "token" asked before this ran was answered with the new one
+    }
+
+    // Room for a newly connected player; the handler is created for it, then passed to admit()
+    public synchronized Game pickRoom() {
+        for (Game room : rooms.values()) {
+            if (room.isRunning() && room.getPlayers().size() < ROOM_CAPACITY) {
+                return room;
+            }
+        }
+        while (rooms.containsKey(nextRoomId)) {
+            nextRoomId++;
+        }
+        return openRoom(nextRoomId);
+    }
+
+    // Takes a new connection (created for a room from pickRoom()) without seating it yet:
+    // its first command decides (see PlayerHandler.enterRoom)
+    public void admit(PlayerHandler player) {
+        player.setRooms(this);
+        workers.schedule(() -> {
+            if (player.claimPlacement()) placePlayer(player);
+        }, PLACE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // Seats a new connection as a player, in another room if its own filled up meanwhile
+    void placePlayer(PlayerHandler player) {
+        Game room = player.getGame();
+        if (room.getPlayers().size() >= ROOM_CAPACITY) {
+            room = pickRoom();
+            player.setGame(room);
+        }
+        join(player, room);
+    }
+
+    // A new connection that only watches: no seat, no snake
+    void placeSpectator(PlayerHandler player) {
+        Game room = player.getGame();
+        if (!room.isRunning()) {
+            room = pickRoom();
+        }
+        player.setSpectating(true);
+        player.setGame(room);
+        room.getSpectators().add(player);
+        if (!player.isRunning()) {
+            room.getSpectators().remove(player); // Closed meanwhile
+            return;
+        }
+        player.sendMessage("Watching room " + room.getRoomId());
+    }
+
+    public void join(PlayerHandler player, Game room) {
+        synchronized (this) {
+            if (!room.isRunning()) {
+                // Closed between pickRoom() and now
+                room = pickRoom();
+                player.setGame(room);
+            }
+            player.setRooms(this);
+            room.getPlayers().add(player);
+        }
+        if (!player.isRunning()) {
+            room.getPlayers().remove(player); // Closed before it was in the list to leave
+            return;
+        }
+        Game joined = room;
+        joined.enqueue(() -> spawn(player, joined));
+    }
+
+    // On the room's thread: the snake for a player that joined it, unless the player has
+    // left, moved on or got one some other way since
+    private void spawn(PlayerHandler player, Game room) {
+        synchronized (player) {
+            if (!player.isRunning() || player.getGame() != room || player.isSpectating()
+                    || player.getSnake() != null) {
+                return;
+            }
+            if (!room.isRunning()) {
+                // Stopped after join() picked it; the player can reconnect to a live room
+                player.sendMessage("Room " + room.getRoomId() + " has closed");
+                player.closeConnection();
+                return;
+            }
+            room.addNewPlayer(player);
+        }
+        if (player.getSnake() != null) {
+            // Lets clients (and LoadGenerator's bots) find their own snake on the board
+            player.sendMessage("You are player " + player.getPlayerChar());
+        }
+    }
+
+    // Moves a player to the given room (opening it if needed) with a fresh snake;
+    // a spectator just starts watching that room instead
+    public void move(PlayerHandler player, int roomId) {
+        Game target;
+        synchronized (this) {
+            target = rooms.get(roomId);
+            if (target == null) {
+                target = openRoom(roomId);
+            }
+        }
+        Game current = player.getGame();
+        if (target == current) return;
+
+        if (player.isSpectating()) {
+            current.getSpectators().remove(player);
+            player.setGame(target);
+            target.getSpectators().add(player);
+            player.sendMessage("Watching room " + roomId);
+            return;
+        }
+        synchronized (player) {
+            leaveSnake(player, current);
+            current.getPlayers().remove(player);
+            player.setGame(target);
+        }
+        join(player, target);
+        player.sendMessage("Joined room " + roomId);
+    }
+
+    // Turns a player into a spectator of its current room
+    public void spectate(PlayerHandler player) {
+        Game room = player.getGame();
+        synchronized (player) {
+            leaveSnake(player, room);
+            room.getPlayers().remove(player);
+            player.setSpectating(true);
+        }
+        room.getSpectators().add(player);
+        player.sendMessage("Watching room " + room.getRoomId());
+    }
+
+    // Takes the player's snake away now and out of the room on its next tick; call with
+    // the player's lock held
+    private static void leaveSnake(PlayerHandler player, Game room) {
+        Snake snake = player.getSnake();
+        if (snake == null) return;
+        player.setSnake(null);
+        room.enqueue(() -> room.removeSnake(snake));
+    }
+
+    public synchronized List<Game> getRooms() {
+        return new ArrayList<>(rooms.values());
+    }
+
+    // Stops every room (closing their replay logs) and the worker pool. With snapshots
+    // on, the stopped rooms are saved one last time for the next --restore; so are
+    // the high scores.
+    public void shutdown() {
+        for (Game room : getRooms()) {
+            room.stop();
+        }
+        workers.shutdownNow();
+        // Lets a save that is already running finish first: both would write the same .tmp files
+        snapshotter.shutdown();
+        try {
+            if (!snapshotter.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                System.out.println("Snapshot writer still busy, not saving again");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (SNAPSHOT_DIR != null) {
+            saveSnapshots();
+        }
+        if (highScores != null) {
+            highScores.flush();
+        }
+    }
+
+    // Each room is encoded from its last published state (no game lock), then written
+    // here: to a temporary file first, then moved over the previous snapshot so a crash
+    // never leaves half a file
+    private void saveSnapshots() {
+        for (Game room : getRooms()) {
+            byte[] data = room.snapshot();
+            Path file = Paths.get(SNAPSHOT_DIR, "room-" + room.getRoomId() + ".snks");
+            Path temp = Paths.get(SNAPSHOT_DIR, "room-" + room.getRoomId() + ".snks.tmp");
+            try {
+                Files.createDirectories(file.getParent());
+                Files.write(temp, data);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.out.println("Snapshot of room " + room.getRoomId() + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private Game openRoom(int roomId) {
+        Game room = new Game(new CopyOnWriteArrayList<>(), 1, roomId);
+        if (ARENA != null) {
+            String[] size = ARENA.toLowerCase().split("x");
+            room.useArena(Integer.parseInt(size[0]), Integer.parseInt(size[1]), ARENA_SEED + roomId);
+        }
+        if (SEED != null) {
+            room.useSeed(SEED + roomId);
+        }
+        if (REPLAY_DIR != null) {
+            String name = "room-" + roomId + "-" + LocalDateTime.now().format(FILE_TIME) + ".snkr";
+            try {
+                room.recordTo(Paths.get(REPLAY_DIR, name));
+            } catch (IOException e) {
+                System.out.println("Cannot record room " + roomId + ": " + e.getMessage());
+            }
+        }
+        room.setBotFill(BOT_FILL);
+        room.setHighScores(highScores);
+        rooms.put(roomId, room);
+        room.start(workers);
+        System.out.println("Opened room " + roomId);
+        return room;
+    }
+
+    private void deleteSnapshot(int roomId) {
+        try {
+            Files.deleteIfExists(Paths.get(SNAPSHOT_DIR, "room-" + roomId + ".snks"));
+        } catch (IOException e) {
+            System.out.println("Cannot delete snapshot of room " + roomId + ": " + e.getMessage());
+        }
+    }
+
+    private synchronized void reclaimEmptyRooms() {
+        long now = System.nanoTime();
+        List<Integer> reclaimed = new ArrayList<>();
+        for (Map.Entry<Integer, Game> entry : rooms.entrySet()) {
+            Game room = entry.getValue();
+            if (!room.isRunning()) {
+                // No more ticks to do it (e.g. after a win)
+                room.applyMembershipChanges();
+                room.expireParkedSnakes();
+            }
+            if (!room.getPlayers().isEmpty() || !room.getSpectators().isEmpty() || room.hasParkedSnakes()) {
+                emptySince.remove(room);
+                continue;
+            }
+            long since = emptySince.computeIfAbsent(room, r -> now);
+            if (now - since >= TimeUnit.SECONDS.toNanos(EMPTY_ROOM_TTL_SECONDS)) {
+                reclaimed.add(entry.getKey());
+            }
+        }
+        for (int roomId : reclaimed) {
+            Game room = rooms.remove(roomId);
+            emptySince.remove(room);
+            room.stop();
+            if (SNAPSHOT_DIR != null) {
+                snapshotter.execute(() -> deleteSnapshot(roomId));
+            }
+            System.out.println("Closed empty room " + roomId);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package snake;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Snake {
+
+    public enum Direction {
+        UP, DOWN, LEFT, RIGHT
+    }
+
+    // Receives each body segment in order, head first
+    public interface SegmentVisitor {
+        void visit(int x, int y);
+    }
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+    private static final int INITIAL_CAPACITY = 16; // Must be a power of two
+
+    private final int id = NEXT_ID.getAndIncrement();
+    // Body as a ring buffer of coordinates: segment i lives at (head + i) & mask.
+    // Moving writes one slot and shifts two ints, so it never allocates once the
+    // arrays are big enough for the snake.
+    private int[] xs = new int[INITIAL_CAPACITY];
+    private int[] ys = new int[INITIAL_CAPACITY];
+    private int mask = INITIAL_CAPACITY - 1;
+    private int head = 0;
+    private int length = 0;
+    private Direction direction = Direction.RIGHT;
+    private char bodyChar;
+    private int score = 0;
+    private int growthPending = 0;
+    // Session token of the player this snake belongs to (see PlayerHandler.getToken)
+    private long ownerToken = 0;
+    // Waiting for its player (restored from a snapshot, or its connection dropped): does
+    // not move until reclaimed, and is removed at parkedUntil (System.nanoTime)
+    private boolean parked = false;
+    private long parkedUntil = 0;
+
+    public Snake(int startX, int startY, char bodyChar) {
+        this.bodyChar = bodyChar;
+        placeInitialBody(startX, startY);
+    }
+
+    // Rebuilds a snake saved in a snapshot; segment i is (xs[i], ys[i]), head first
+    public static Snake restore(char bodyChar, Direction direction, int score, int growthPending, int[] xs, int[] ys) {
+        Snake snake = new Snake(0, 0, bodyChar);
+        snake.length = 0;
+        for (int i = xs.length - 1; i >= 0; i--) {
+            snake.pushHead(xs[i], ys[i]);
+        }
+        snake.direction = direction;
+        snake.score = score;
+        snake.growthPending = growthPending;
+        return snake;
+    }
+
+    // Start with a body of 3 segments, heading right
+    private void placeInitialBody(int startX, int startY) {
+        length = 0;
+        pushHead(startX - 2, startY);
+        pushHead(startX - 1, startY);
+        pushHead(startX, startY);
+    }
+
+    private void pushHead(int x, int y) {
+        if (length == xs.length) {
+            growCapacity();
+        }
+        head = (head - 1) & mask;
+        xs[head] = x;
+        ys[head] = y;
+        length++;
+    }
+
+    private void growCapacity() {
+        int[] newXs = new int[xs.length * 2];
+        int[] newYs = new int[ys.length * 2];
+        for (int i = 0; i < length; i++) {
+            newXs[i] = xs[(head + i) & mask];
+            newYs[i] = ys[(head + i) & mask];
+        }
+        xs = newXs;
+        ys = newYs;
+        mask = newXs.length - 1;
+        head = 0;
+    }
+
+    public void move() {
+        int newX = getHeadX();
+        int newY = getHeadY();
+
+        switch (direction) {
+            case UP:
+                newY--;
+                break;
+            case DOWN:
+                newY++;
+                break;
+            case LEFT:
+                newX--;
+                break;
+            case RIGHT:
+                newX++;
+                break;
+        }
+
+        pushHead(newX, newY); // Add to front
+
+        if (growthPending > 0) {
+            growthPending--;
+        } else {
+            length--; // Remove from end
+        }
+    }
+
+    // Inside a game, go through Leaderboard.addScore, which keeps the ranking in order
+    public void addScore(int amount) {
+        score += amount;
+    }
+
+    public void grow() {
+        growthPending++;
+    }
+
+    // Returns false if the turn changes nothing (same direction or a reversal)
+    public boolean setDirection(Direction newDirection) {
+        // Prevent the snake from reversing
+        if (direction == Direction.UP && newDirection == Direction.DOWN) return false;
+        if (direction == Direction.DOWN && newDirection == Direction.UP) return false;
+        if (direction == Direction.LEFT && newDirection == Direction.RIGHT) return false;
+        if (direction == Direction.RIGHT && newDirection == Direction.LEFT) return false;
+        if (direction == newDirection) return false;
+        this.direction = newDirection;
+        return true;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    // Segment coordinates by position, 0 being the head
+    public int getX(int index) {
+        return xs[(head + index) & mask];
+    }
+
+    public int getY(int index) {
+        return ys[(head + index) & mask];
+    }
+
+    public int getHeadX() {
+        return xs[head];
+    }
+
+    public int getHeadY() {
+        return ys[head];
+    }
+
+    public int getTailX() {
+        return getX(length - 1);
+    }
+
+    public int getTailY() {
+        return getY(length - 1);
+    }
+
+    public void forEachSegment(SegmentVisitor visitor) {
+        for (int i = 0; i < length; i++) {
+            int slot = (head + i) & mask;
+            visitor.visit(xs[slot], ys[slot]);
+        }
+    }
+
+    // Unique per snake, never 0; used to tag cells in Occupancy
+    public int getId() {
+        return id;
+    }
+
+    public char getBodyChar() {
+        return bodyChar;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public boolean checkSelfCollision() {
+        int headX = getHeadX();
+        int headY = getHeadY();
+        for (int i = 1; i < length; i++) {
+            if (getX(i) == headX && getY(i) == headY) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public int getGrowthPending() {
+        return growthPending;
+    }
+
+    public long getOwnerToken() {
+        return ownerToken;
+    }
+
+    public void setOwnerToken(long ownerToken) {
+        this.ownerToken = ownerToken;
+    }
+
+    public boolean isParked() {
+        return parked;
+    }
+
+    public long getParkedUntil() {
+        return parkedUntil;
+    }
+
+    public void park(long until) {
+        this.parked = true;
+        this.parkedUntil = until;
+    }
+
+    public void unpark() {
+        this.parked = false;
+    }
+
+    public void reset(int startX, int startY) {
+        this.direction = Direction.RIGHT;
+        placeInitialBody(startX, startY);
+    }
+}
@@ -0,0 +1,335 @@
+package snake;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SnakeClient {
+    public static void main(String[] args) {
+        String host = "127.0.0.1";
+        int port = 8189;
+        boolean delta = true;
+        boolean binary = false;
+        boolean spectate = false;
+        String reclaim = null;
+
+        // "--full" asks the server for complete screens instead of cell deltas,
+        // "--binary" uses the binary protocol (BinaryProtocol) instead of text,
+        // "--spectate" watches without playing,
+        // "--reclaim=<token>" takes back your snake after a dropped connection or a server restart
+        List<String> positional = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--full")) {
+                delta = false;
+            } else if (arg.equals("--binary")) {
+                binary = true;
+            } else if (arg.equals("--spectate")) {
+                spectate = true;
+            } else if (arg.startsWith("--reclaim=")) {
+                reclaim = arg.substring("--reclaim=".length());
+            } else {
+                positional.add(arg);
+            }
+        }
+        if (positional.size() >= 1) {
+            host = positional.get(0);
+        }
+        if (positional.size() >= 2) {
+            try {
+                port = Integer.parseInt(positional.get(1));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid port number: " + positional.get(1));
+                System.exit(1);
+            }
+        }
+
+        try (Socket socket = new Socket(host, port);
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+
+            System.out.println("Connected to Snake server. Use w,a,s,d and Enter to move. Type 'quit' to exit.");
+            if (binary) {
+                runBinary(socket, delta, spectate, reclaim);
+                return;
+            }
+            // First, so the server hands back the old snake instead of spawning a new one
+            if (reclaim != null) {
+                out.println("reclaim " + reclaim);
+            }
+            if (spectate) {
+                out.println("spectate");
+            } else if (delta) {
+                out.println("delta");
+            }
+            out.println("token");
+            DeltaScreen screen = new DeltaScreen();
+
+            // Thread to read from server and print to console
+            Thread serverListener = new Thread(() -> {
+                try {
+                    String fromServer;
+                    while ((fromServer = in.readLine()) != null) {
+                        if (fromServer.equals("GAME OVER")) {
+                            System.out.println("\n--- GAME OVER ---");
+                            System.out.println("You crashed! Thanks for playing.");
+                            System.exit(0); // Exit the client
+                        }
+                        if (!screen.apply(fromServer, in)) {
+                            System.out.println(fromServer);
+                        }
+                    }
+                } catch (IOException e) {
+                    // This can happen if the server closes the connection
+                    System.out.println("\nConnection to server lost.");
+                    System.exit(0);
+                }
+            });
+            serverListener.start();
+
+            // Main thread reads from console and sends to server
+            BufferedReader stdIn = new BufferedReader(new InputStreamReader(System.in));
+            String fromUser;
+            while (serverListener.isAlive() && (fromUser = stdIn.readLine()) != null) {
+                out.println(fromUser);
+                if (fromUser.equalsIgnoreCase("quit")) {
+                    break;
+                }
+            }
+
+            // Give the listener thread a moment to receive messages before exiting
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+
+            // If we break the loop, close the client
+            System.exit(0);
+
+        } catch (UnknownHostException e) {
+            System.err.println("Don't know about host " + host);
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Couldn't get I/O for the connection to " + host);
+            System.exit(1);
+        }
+    }
+
+    private static void runBinary(Socket socket, boolean delta, boolean spectate, String reclaim) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out.write(BinaryProtocol.HANDSHAKE_PREFIX);
+        out.write(BinaryProtocol.VERSION);
+        out.write(delta ? BinaryProtocol.CAP_DELTA : 0);
+        if (reclaim != null) {
+            BinaryProtocol.Writer input = new BinaryProtocol.Writer();
+            input.writeByte(BinaryProtocol.IN_RECLAIM);
+            input.writeLong(Long.parseUnsignedLong(reclaim, 16));
+            out.write(9);
+            out.write(input.toByteArray());
+        }
+        if (spectate) {
+            out.write(1);
+            out.write(BinaryProtocol.IN_SPECTATE);
+        }
+        out.write(1);
+        out.write(BinaryProtocol.IN_TOKEN);
+        out.flush();
+        DeltaScreen screen = new DeltaScreen();
+
+        Thread serverListener = new Thread(() -> {
+            try {
+                // Skip any text sent before the server saw the handshake; HELLO's type is the first 0 byte
+                int b;
+                while ((b = in.read()) != BinaryProtocol.MSG_HELLO) {
+                    if (b < 0) throw new IOException("Connection closed before HELLO");
+                }
+                BinaryProtocol.readVarint(in); // Version
+                BinaryProtocol.readVarint(in); // Capabilities
+                while (true) {
+                    int length = BinaryProtocol.readVarint(in);
+                    byte[] message = new byte[length];
+                    in.readFully(message);
+                    if (message[0] == BinaryProtocol.MSG_GAME_OVER) {
+                        System.out.println("\n--- GAME OVER ---");
+                        System.out.println("You crashed! Thanks for playing.");
+                        System.exit(0);
+                    }
+                    screen.apply(message[0], new BinaryProtocol.Reader(message, 1, length - 1));
+                }
+            } catch (IOException e) {
+                System.out.println("\nConnection to server lost.");
+                System.exit(0);
+            }
+        });
+        serverListener.start();
+
+        BufferedReader stdIn = new BufferedReader(new InputStreamReader(System.in));
+        String fromUser;
+        while (serverListener.isAlive() && (fromUser = stdIn.readLine()) != null) {
+            String[] words = fromUser.trim().toLowerCase().split("\\s+");
+            BinaryProtocol.Writer input = new BinaryProtocol.Writer();
+            try {
+                switch (words[0]) {
+                    case "w": input.writeByte(BinaryProtocol.IN_UP); break;
+                    case "s": input.writeByte(BinaryProtocol.IN_DOWN); break;
+                    case "a": input.writeByte(BinaryProtocol.IN_LEFT); break;
+                    case "d": input.writeByte(BinaryProtocol.IN_RIGHT); break;
+                    case "quit": input.writeByte(BinaryProtocol.IN_QUIT); break;
+                    case "spectate": input.writeByte(BinaryProtocol.IN_SPECTATE); break;
+                    case "token": input.writeByte(BinaryProtocol.IN_TOKEN); break;
+                    case "reclaim":
+                        input.writeByte(BinaryProtocol.IN_RECLAIM);
+                        input.writeLong(Long.parseUnsignedLong(words[1], 16));
+                        break;
+                    case "room":
+                        input.writeByte(BinaryProtocol.IN_ROOM);
+                        input.writeVarint(Integer.parseInt(words[1]));
+                        break;
+                    case "view":
+                        input.writeByte(BinaryProtocol.IN_VIEW);
+                        input.writeVarint(Integer.parseInt(words[1]));
+                        input.writeVarint(Integer.parseInt(words[2]));
+                        break;
+                    default:
+                        continue;
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                continue;
+            }
+            byte[] bytes = input.toByteArray();
+            out.write(bytes.length);
+            out.write(bytes);
+            out.flush();
+            if (words[0].equals("quit")) {
+                break;
+            }
+        }
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        System.exit(0);
+    }
+
+    // Local copy of the board for delta mode, redrawn after every update from the server
+    private static class DeltaScreen {
+        private char[][] grid;
+        private int level;
+        private String[] footer = new String[0];
+
+        // Returns false if the line is not part of the delta protocol
+        boolean apply(String line, BufferedReader in) throws IOException {
+            if (line.startsWith("@K ")) {
+                String[] header = line.split(" ");
+                level = Integer.parseInt(header[1]);
+                int width = Integer.parseInt(header[2]);
+                int height = Integer.parseInt(header[3]);
+                grid = new char[height][];
+                for (int y = 0; y < height; y++) {
+                    String row = in.readLine();
+                    if (row == null) throw new IOException("Connection closed during keyframe");
+                    grid[y] = Arrays.copyOf(row.toCharArray(), width);
+                }
+                return true;
+            }
+            if (line.startsWith("@S ")) {
+                footer = line.substring(3).split("\\|");
+                redraw();
+                return true;
+            }
+            if (line.startsWith("@D;")) {
+                if (grid == null) return true; // Wait for the first keyframe
+                for (String change : line.substring(3).split(";")) {
+                    int firstComma = change.indexOf(',');
+                    int secondComma = change.indexOf(',', firstComma + 1);
+                    int x = Integer.parseInt(change.substring(0, firstComma));
+                    int y = Integer.parseInt(change.substring(firstComma + 1, secondComma));
+                    if (y >= 0 && y < grid.length && x >= 0 && x < grid[y].length) {
+                        grid[y][x] = change.charAt(secondComma + 1);
+                    }
+                }
+                redraw();
+                return true;
+            }
+            return false;
+        }
+
+        // Same for one binary message (type byte already read)
+        void apply(int type, BinaryProtocol.Reader message) throws IOException {
+            switch (type) {
+                case BinaryProtocol.MSG_KEYFRAME: {
+                    level = message.readVarint();
+                    int width = message.readVarint();
+                    int height = message.readVarint();
+                    message.readVarint(); // Window x on the board
+                    message.readVarint(); // Window y
+                    grid = new char[height][width];
+                    for (int y = 0; y < height; y++) {
+                        for (int x = 0; x < width; x++) {
+                            grid[y][x] = (char) message.readByte();
+                        }
+                    }
+                    break;
+                }
+                case BinaryProtocol.MSG_DELTA: {
+                    if (grid == null) return;
+                    int count = message.readVarint();
+                    int width = grid[0].length;
+                    for (int i = 0; i < count; i++) {
+                        int cell = message.readVarint();
+                        char value = (char) message.readByte();
+                        if (cell / width < grid.length) {
+                            grid[cell / width][cell % width] = value;
+                        }
+                    }
+                    redraw();
+                    break;
+                }
+                case BinaryProtocol.MSG_SCORES: {
+                    int pointsToLevelUp = message.readVarint();
+                    int count = message.readVarint();
+                    List<String> lines = new ArrayList<>();
+                    lines.add("--- Top 3 Players ---");
+                    for (int i = 0; i < count; i++) {
+                        char player = (char) message.readByte();
+                        lines.add((i + 1) + ". Player '" + player + "': " + message.readVarint());
+                    }
+                    lines.add("--------------------");
+                    lines.add("Level Up In: " + pointsToLevelUp + " points");
+                    footer = lines.toArray(new String[0]);
+                    redraw();
+                    break;
+                }
+                case BinaryProtocol.MSG_TEXT:
+                    System.out.println(message.readRemainingText());
+                    break;
+            }
+        }
+
+        private void redraw() {
+            if (grid == null) return;
+            StringBuilder sb = new StringBuilder();
+            sb.append("\033[H\033[2J");
+            sb.append("--- Snake vs Snakes --- Level: ").append(level).append(" ---\n");
+            for (char[] row : grid) {
+                sb.append(row).append('\n');
+            }
+            for (String footerLine : footer) {
+                sb.append(footerLine).append('\n');
+            }
+            System.out.print(sb);
+            System.out.flush();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package snake;
+
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class SnakeServer {
+
+    // Expanded character set for more players
+    static final char[] PLAYER_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+
+    private static final long STATS_LOG_SECONDS = 60;
+
+    public static void main(String[] args) {
+        int port = 8189;
+        boolean nio = false;
+        boolean virtual = false;
+        boolean restore = false;
+        for (String arg : args) {
+            if (arg.equals("--nio")) {
+                nio = true;
+                continue;
+            }
+            if (arg.equals("--virtual")) {
+                virtual = true;
+                continue;
+            }
+            if (arg.equals("--restore")) {
+                restore = true;
+                continue;
+            }
+            try {
+                port = Integer.parseInt(arg);
+            } catch (NumberFormatException e) {
+                System.err.println("Usage: java snake.SnakeServer [--nio | --virtual] [--restore] <port>");
+                return;
+            }
+        }
+
+        String mode = nio ? " (NIO mode)" : virtual ? " (virtual threads)" : "";
+        System.out.println("Starting Snake Server on port " + port + mode);
+
+        // Map files are checked and compiled once, before any room needs them
+        try {
+            Board.loadLevels();
+        } catch (IOException e) {
+            System.err.println("Cannot load maps: " + e.getMessage());
+            return;
+        }
+
+        // Every game runs in a room; rooms are opened as players arrive
+        RoomManager rooms = new RoomManager();
+        // Ctrl+C still finishes replay logs
+        Runtime.getRuntime().addShutdownHook(new Thread(rooms::shutdown));
+        if (restore) {
+            // Saved snakes wait for their players to come back with "reclaim <token>"
+            try {
+                rooms.restoreSnapshots();
+            } catch (IOException e) {
+                System.err.println("Cannot restore snapshots: " + e.getMessage());
+                return;
+            }
+        }
+        rooms.start();
+        try {
+            Metrics.start(rooms);
+        } catch (IOException e) {
+            System.err.println("Cannot serve metrics: " + e.getMessage());
+        }
+        ScheduledExecutorService statsExecutor = Executors.newSingleThreadScheduledExecutor();
+        statsExecutor.scheduleAtFixedRate(() -> {
+            for (Game room : rooms.getRooms()) {
+                System.out.println("Room " + room.getRoomId() + " tick stats: " + room.getTickStats().summary());
+            }
+            System.out.println("Dropped inputs (rate limit or full buffer): " + InputBuffer.getDroppedAll());
+            if (Metrics.LOG) {
+                System.out.print(Metrics.render(rooms));
+            }
+        }, STATS_LOG_SECONDS, STATS_LOG_SECONDS, TimeUnit.SECONDS);
+
+        try {
+            if (nio) {
+                new NioServer(port, rooms).run();
+            } else if (virtual) {
+                runVirtual(port, rooms);
+            } else {
+                runBlocking(port, rooms, playerHandler -> new Thread(playerHandler).start());
+            }
+        } catch (IOException e) {
+            System.err.println("Server error: " + e.getMessage());
+            e.printStackTrace();
+            statsExecutor.shutdownNow();
+            rooms.shutdown();
+        }
+    }
+
+    // Same blocking accept loop and PlayerHandler code, but every thread is virtual,
+    // so a blocked readLine() only parks a virtual thread instead of pinning an OS thread.
+    // Carrier pool size can be tuned with -Djdk.virtualThreadScheduler.parallelism=N
+    private static void runVirtual(int port, RoomManager rooms) throws IOException {
+        IOException[] failure = new IOException[1];
+        Thread acceptThread = Thread.ofVirtual().name("accept-loop").start(() -> {
+            try {
+                runBlocking(port, rooms, Executors.newVirtualThreadPerTaskExecutor());
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        try {
+            acceptThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    static void runBlocking(int port, RoomManager rooms, Executor playerExecutor) throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            int playerCounter = 0;
+
+            while (true) {
+                Socket clientSocket = serverSocket.accept();
+
+                System.out.println("New player connected: " + clientSocket.getInetAddress());
+                // Cycle through the character set for new players
+                char playerChar = PLAYER_CHARS[playerCounter % PLAYER_CHARS.length];
+
+                Game room = rooms.pickRoom();
+                PlayerHandler playerHandler = new PlayerHandler(clientSocket, room, playerChar, room.getPlayers());
+                rooms.admit(playerHandler);
+
+                playerExecutor.execute(playerHandler);
+
+                playerCounter++;
+            }
+        }
+    }
+}
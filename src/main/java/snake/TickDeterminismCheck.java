@@ -0,0 +1,122 @@
+package snake;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Runs the same game twice on a generated arena, once with the serial tick and once with
+// the parallel one, with identical seeded players, and checks after every tick that both
+// have the same snakes, scores and board. Also reports the time per tick of each.
+// Only the tick is run; nothing is rendered.
+//
+//   java snake.TickDeterminismCheck
+//   java snake.TickDeterminismCheck 2000 2000 20000 200    (width height snakes ticks)
+public class TickDeterminismCheck {
+    public static void main(String[] args) {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int snakeCount = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+        int ticks = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+        long seed = 42;
+
+        Run serial = new Run(width, height, snakeCount, seed, false);
+        Run parallel = new Run(width, height, snakeCount, seed, true);
+
+        for (int tick = 1; tick <= ticks; tick++) {
+            serial.step();
+            parallel.step();
+            String difference = compare(serial, parallel);
+            if (difference != null) {
+                System.out.println("MISMATCH at tick " + tick + ": " + difference);
+                System.exit(1);
+            }
+        }
+        System.out.printf("%d ticks identical (%dx%d, %d snakes, %d deaths)%n",
+                ticks, width, height, snakeCount, serial.deaths);
+        System.out.printf("serial   %8.2f ms/tick%n", serial.nanos / 1e6 / ticks);
+        System.out.printf("parallel %8.2f ms/tick%n", parallel.nanos / 1e6 / ticks);
+    }
+
+    private static String compare(Run a, Run b) {
+        for (int i = 0; i < a.bots.size(); i++) {
+            Snake first = a.bots.get(i).getSnake();
+            Snake second = b.bots.get(i).getSnake();
+            if ((first == null) != (second == null)) return "player " + i + " alive in only one game";
+            if (first == null) continue;
+            if (first.getScore() != second.getScore()) return "player " + i + " score";
+            if (first.getLength() != second.getLength()) return "player " + i + " length";
+            for (int s = 0; s < first.getLength(); s++) {
+                if (first.getX(s) != second.getX(s) || first.getY(s) != second.getY(s)) {
+                    return "player " + i + " segment " + s;
+                }
+            }
+        }
+        char[][] gridA = a.game.getBoard().getGrid();
+        char[][] gridB = b.game.getBoard().getGrid();
+        for (int y = 0; y < gridA.length; y++) {
+            if (!Arrays.equals(gridA[y], gridB[y])) return "board row " + y;
+        }
+        return null;
+    }
+
+    // One game plus its players; dead players respawn so the population stays constant
+    private static class Run {
+        final List<PlayerHandler> players = new CopyOnWriteArrayList<>();
+        final List<Bot> bots = new ArrayList<>();
+        final Game game;
+        long nanos = 0;
+        int deaths = 0;
+
+        Run(int width, int height, int snakeCount, long seed, boolean parallel) {
+            game = new Game(players);
+            game.useArena(width, height, seed);
+            game.setLevelLocked(true);
+            game.setParallelTick(parallel);
+            for (int i = 0; i < snakeCount; i++) {
+                Bot bot = new Bot(game, players, seed + i);
+                bots.add(bot);
+                spawn(bot);
+            }
+        }
+
+        void step() {
+            for (Bot bot : bots) {
+                if (bot.isDead()) {
+                    deaths++;
+                    spawn(bot);
+                } else {
+                    bot.steer();
+                }
+            }
+            long start = System.nanoTime();
+            game.tick();
+            nanos += System.nanoTime() - start;
+        }
+
+        private void spawn(Bot bot) {
+            players.add(bot);
+            game.addNewPlayer(bot);
+        }
+    }
+
+    private static class Bot extends HeadlessPlayer {
+        private static final Snake.Direction[] DIRECTIONS = Snake.Direction.values();
+
+        private final Random random;
+
+        Bot(Game game, List<PlayerHandler> players, long seed) {
+            super(game, 'a', players);
+            this.random = new Random(seed);
+        }
+
+        // Turn at random now and then
+        void steer() {
+            Snake snake = getSnake();
+            if (snake != null && random.nextInt(4) == 0) {
+                snake.setDirection(DIRECTIONS[random.nextInt(DIRECTIONS.length)]);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package snake;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Runs a task at a fixed rate. Each tick is scheduled against an absolute deadline
+// (start + n * period) rather than "sleep after work", so the time spent inside the
+// task does not stretch the period. A tick that runs past its successor's deadline
+// counts as an overrun; the schedule then restarts from now instead of firing a
+// burst of catch-up ticks.
+public class TickScheduler {
+    private final ScheduledExecutorService executor;
+    private final Runnable task;
+    private final TickStats stats = new TickStats();
+    private volatile long periodNanos;
+    private volatile boolean running = false;
+    private long nextDeadline;
+
+    public TickScheduler(ScheduledExecutorService executor, Runnable task, long periodMillis) {
+        this.executor = executor;
+        this.task = task;
+        setPeriodMillis(periodMillis);
+    }
+
+    public void start() {
+        running = true;
+        nextDeadline = System.nanoTime();
+        executor.execute(this::runTick);
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Takes effect from the next deadline on, no restart needed
+    public final void setPeriodMillis(long periodMillis) {
+        this.periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+        stats.setTargetPeriod(periodNanos);
+    }
+
+    public TickStats getStats() {
+        return stats;
+    }
+
+    private void runTick() {
+        if (!running) return;
+
+        long start = System.nanoTime();
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            // Keep the game alive; one bad tick should not stop the clock
+            e.printStackTrace();
+        }
+        long end = System.nanoTime();
+        stats.record(start, end - start, Math.max(0, start - nextDeadline));
+
+        nextDeadline += periodNanos;
+        if (end > nextDeadline) {
+            stats.recordOverrun();
+            nextDeadline = end;
+        }
+        if (running) {
+            executor.schedule(this::runTick, nextDeadline - end, TimeUnit.NANOSECONDS);
+        }
+    }
+}
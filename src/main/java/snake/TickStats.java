@@ -0,0 +1,73 @@
+package snake;
+
+import java.util.Arrays;
+
+// Rolling record of the most recent ticks: how long each one took, how late it
+// started, and how many blew their time budget. Written by the tick thread once
+// per tick, read by anyone who wants a summary.
+public class TickStats {
+    private static final int WINDOW = 1024;
+
+    private final long[] durations = new long[WINDOW];
+    private final long[] startTimes = new long[WINDOW];
+    private int count = 0; // Samples currently in the window
+    private int next = 0;
+    private long totalTicks = 0;
+    private long overruns = 0;
+    private long maxLatenessNanos = 0;
+    private long targetPeriodNanos;
+
+    public synchronized void record(long startNanos, long durationNanos, long latenessNanos) {
+        durations[next] = durationNanos;
+        startTimes[next] = startNanos;
+        next = (next + 1) % WINDOW;
+        if (count < WINDOW) count++;
+        totalTicks++;
+        maxLatenessNanos = Math.max(maxLatenessNanos, latenessNanos);
+    }
+
+    public synchronized void recordOverrun() {
+        overruns++;
+    }
+
+    public synchronized void setTargetPeriod(long periodNanos) {
+        this.targetPeriodNanos = periodNanos;
+    }
+
+    public synchronized long getTotalTicks() {
+        return totalTicks;
+    }
+
+    public synchronized long getOverruns() {
+        return overruns;
+    }
+
+    public synchronized double getTargetTps() {
+        return targetPeriodNanos == 0 ? 0 : 1e9 / targetPeriodNanos;
+    }
+
+    // Ticks per second measured over the window
+    public synchronized double getActualTps() {
+        if (count < 2) return 0;
+        int newest = (next - 1 + WINDOW) % WINDOW;
+        int oldest = (next - count + WINDOW) % WINDOW;
+        long span = startTimes[newest] - startTimes[oldest];
+        return span == 0 ? 0 : (count - 1) * 1e9 / span;
+    }
+
+    // Tick duration percentile over the window, in nanoseconds (p in 0..100)
+    public synchronized long getDurationPercentile(double p) {
+        if (count == 0) return 0;
+        long[] sorted = Arrays.copyOf(durations, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(p / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    public synchronized String summary() {
+        return String.format("ticks=%d tps=%.2f/%.2f p50=%.2fms p99=%.2fms max=%.2fms overruns=%d maxLate=%.2fms",
+                totalTicks, getActualTps(), getTargetTps(),
+                getDurationPercentile(50) / 1e6, getDurationPercentile(99) / 1e6,
+                getDurationPercentile(100) / 1e6, overruns, maxLatenessNanos / 1e6);
+    }
+}
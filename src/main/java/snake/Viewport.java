@@ -0,0 +1,95 @@
+package snake;
+
+// The part of the board one player is shown: a window that follows the head of the
+// player's snake. The window only scrolls when the head gets within a quarter of its
+// size from an edge, and then recenters on it, so most ticks keep the same origin and
+// delta clients keep getting small updates.
+//
+// Tuning (system property):
+//   snake.viewport   WIDTHxHEIGHT of the window (default 60x25, the largest built-in
+//                    map, so those are always shown whole). Clients can pick their
+//                    own size with the "view <width> <height>" command.
+public class Viewport {
+    static final int DEFAULT_WIDTH;
+    static final int DEFAULT_HEIGHT;
+    static final int MIN_SIZE = 10;
+    static final int MAX_SIZE = 400;
+
+    static {
+        String[] size = System.getProperty("snake.viewport", "60x25").toLowerCase().split("x");
+        DEFAULT_WIDTH = Integer.parseInt(size[0]);
+        DEFAULT_HEIGHT = Integer.parseInt(size[1]);
+    }
+
+    // Requested size, set from the connection's thread
+    private volatile int requestedWidth = DEFAULT_WIDTH;
+    private volatile int requestedHeight = DEFAULT_HEIGHT;
+
+    // Current window and the one last sent; only touched by the game tick
+    private int x = 0;
+    private int y = 0;
+    private int width = 0;
+    private int height = 0;
+    private int sentX = -1;
+    private int sentY = -1;
+    private int sentWidth = -1;
+    private int sentHeight = -1;
+
+    public void setSize(int width, int height) {
+        this.requestedWidth = Math.max(MIN_SIZE, Math.min(MAX_SIZE, width));
+        this.requestedHeight = Math.max(MIN_SIZE, Math.min(MAX_SIZE, height));
+    }
+
+    // Moves the window for this tick; snake may be null (not spawned yet), then it stays put
+    public void follow(Snake snake, int boardWidth, int boardHeight) {
+        width = Math.min(requestedWidth, boardWidth);
+        height = Math.min(requestedHeight, boardHeight);
+        if (snake != null) {
+            int headX = snake.getHeadX();
+            int headY = snake.getHeadY();
+            int marginX = width / 4;
+            int marginY = height / 4;
+            if (headX < x + marginX || headX >= x + width - marginX) {
+                x = headX - width / 2;
+            }
+            if (headY < y + marginY || headY >= y + height - marginY) {
+                y = headY - height / 2;
+            }
+        }
+        x = Math.max(0, Math.min(boardWidth - width, x));
+        y = Math.max(0, Math.min(boardHeight - height, y));
+    }
+
+    // True if the window is not where it was when the last frame was sent
+    public boolean hasMoved() {
+        return x != sentX || y != sentY || width != sentWidth || height != sentHeight;
+    }
+
+    public void markSent() {
+        sentX = x;
+        sentY = y;
+        sentWidth = width;
+        sentHeight = height;
+    }
+
+    // Same key for every player looking at the same window, so they share frames
+    public long key() {
+        return ((long) x << 44) | ((long) y << 24) | ((long) width << 12) | height;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}